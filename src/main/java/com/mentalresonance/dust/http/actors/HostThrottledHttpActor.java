@@ -0,0 +1,139 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mentalresonance.dust.http.actors;
+
+import com.mentalresonance.dust.core.actors.Actor;
+import com.mentalresonance.dust.core.actors.ActorBehavior;
+import com.mentalresonance.dust.core.actors.Props;
+import com.mentalresonance.dust.http.msgs.DeferredHttpRequestMsg;
+import com.mentalresonance.dust.http.service.HttpRequestResponseMsg;
+import com.mentalresonance.dust.http.trait.HttpClientActor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An {@link HttpClientActor} which shapes traffic by {@link HttpRequestResponseMsg#key()} (by default the host).
+ * At most maxInFlight requests per key are given to the HttpService at any time - the rest wait in a per-key queue
+ * inside this Actor rather than in OkHttp's dispatcher, so one slow host cannot occupy the dispatcher.
+ * <p>
+ * Responses are returned to the original sender of the {@link HttpRequestResponseMsg}. If a key's queue already
+ * holds maxQueued requests the request is returned immediately with an exception.
+ * </p>
+ */
+@Slf4j
+public class HostThrottledHttpActor extends Actor implements HttpClientActor {
+
+    final int maxInFlight;
+    final int maxQueued;
+
+    final Map<String, HostState> hosts = new HashMap<>();
+
+    /**
+     * Create the Props
+     * @param maxInFlight maximum concurrent requests per key
+     * @param maxQueued maximum waiting requests per key
+     * @return Props
+     */
+    public static Props props(Integer maxInFlight, Integer maxQueued) {
+        return Props.create(HostThrottledHttpActor.class, maxInFlight, maxQueued);
+    }
+
+    /**
+     * Constructor
+     * @param maxInFlight maximum concurrent requests per key
+     * @param maxQueued maximum waiting requests per key
+     */
+    public HostThrottledHttpActor(Integer maxInFlight, Integer maxQueued) {
+        this.maxInFlight = maxInFlight;
+        this.maxQueued = maxQueued;
+    }
+
+    @Override
+    protected ActorBehavior createBehavior() {
+        return message -> {
+            if (message instanceof HttpRequestResponseMsg msg) {
+                if (sender == self) {
+                    completed(msg);
+                } else
+                    submit(msg);
+            } else if (message instanceof DeferredHttpRequestMsg msg) {
+                request(msg);
+            } else {
+                super.createBehavior().onMessage(message);
+            }
+        };
+    }
+
+    void submit(HttpRequestResponseMsg msg) {
+        String key = msg.key();
+        HostState state = hosts.computeIfAbsent(key, k -> new HostState());
+
+        if (state.inFlight < maxInFlight) {
+            dispatch(state, msg);
+        }
+        else if (state.pending.size() < maxQueued) {
+            state.pending.add(msg);
+        }
+        else {
+            log.warn("Queue for {} full - rejecting {}", key, msg.request.url());
+            msg.exception = new IOException("Request queue full for " + key);
+            msg.getSender().tell(msg, self);
+        }
+    }
+
+    /*
+     * The original message travels as the tag of the request we make so we can route the reply
+     */
+    void dispatch(HostState state, HttpRequestResponseMsg msg) {
+        HttpRequestResponseMsg forward = new HttpRequestResponseMsg(self, msg.request, msg);
+        forward.profile = msg.profile;
+        forward.materialize = msg.materialize;
+        ++state.inFlight;
+        request(forward);
+    }
+
+    void completed(HttpRequestResponseMsg forward) {
+        HttpRequestResponseMsg msg = (HttpRequestResponseMsg) forward.tag;
+        String key = msg.key();
+        HostState state = hosts.get(key);
+
+        msg.response = forward.response;
+        msg.data = forward.data;
+        msg.exception = forward.exception;
+        msg.getSender().tell(msg, self);
+
+        if (null != state) {
+            --state.inFlight;
+            if (! state.pending.isEmpty()) {
+                dispatch(state, state.pending.poll());
+            }
+            else if (0 == state.inFlight) {
+                hosts.remove(key);
+            }
+        }
+    }
+
+    static class HostState {
+        int inFlight = 0;
+        final ArrayDeque<HttpRequestResponseMsg> pending = new ArrayDeque<>();
+    }
+}
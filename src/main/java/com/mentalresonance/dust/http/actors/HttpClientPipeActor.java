@@ -21,6 +21,7 @@ package com.mentalresonance.dust.http.actors;
 import com.mentalresonance.dust.core.actors.Actor;
 import com.mentalresonance.dust.core.actors.ActorBehavior;
 import com.mentalresonance.dust.core.actors.Props;
+import com.mentalresonance.dust.http.msgs.DeferredHttpRequestMsg;
 import com.mentalresonance.dust.http.service.HttpRequestResponseMsg;
 import com.mentalresonance.dust.http.trait.HttpClientActor;
 
@@ -53,11 +54,17 @@ public class HttpClientPipeActor extends Actor implements HttpClientActor {
             if (Objects.requireNonNull(message) instanceof HttpRequestResponseMsg msg) {
                 if (sender == self) {
                     parent.tell(msg, self);
-                } else
-                    request(new HttpRequestResponseMsg(self, msg.request, msg.tag));
+                } else {
+                    HttpRequestResponseMsg forward = new HttpRequestResponseMsg(self, msg.request, msg.tag);
+                    forward.profile = msg.profile;
+                    forward.materialize = msg.materialize;
+                    request(forward);
+                }
                 /*
                  * Let super handle all the rest
                  */
+            } else if (message instanceof DeferredHttpRequestMsg msg) {
+                request(msg);
             } else {
                 super.createBehavior().onMessage(message);
             }
@@ -0,0 +1,486 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mentalresonance.dust.http.actors;
+
+import com.mentalresonance.dust.core.actors.Actor;
+import com.mentalresonance.dust.core.actors.ActorBehavior;
+import com.mentalresonance.dust.core.actors.ActorRef;
+import com.mentalresonance.dust.core.actors.Props;
+import com.mentalresonance.dust.http.msgs.HttpDownloadCompleteMsg;
+import com.mentalresonance.dust.http.msgs.HttpDownloadFailedMsg;
+import com.mentalresonance.dust.http.msgs.HttpDownloadProgressMsg;
+import com.mentalresonance.dust.http.service.HttpService;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.Request;
+import okhttp3.Response;
+import okio.BufferedSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Downloads a url to a file without passing the body through the heap - the response source is transferred
+ * straight into a FileChannel. If a HEAD shows the server accepts byte ranges and gives a length, the file is
+ * fetched as up to maxSegments parallel Range requests each writing its own region of the file.
+ * <p>
+ * Progress of ranged downloads is kept in a &lt;path&gt;.progress sidecar, so if the download fails or the Actor is
+ * stopped a new HttpDownloadActor for the same url and path resumes where it left off (provided length and
+ * ETag / Last-Modified are unchanged).
+ * </p>
+ * The parent is sent {@link HttpDownloadProgressMsg}s every second, then an {@link HttpDownloadCompleteMsg} carrying
+ * the path and SHA-256 of the file or an {@link HttpDownloadFailedMsg}. The Actor then stops.
+ */
+@Slf4j
+public class HttpDownloadActor extends Actor {
+
+    static final long TRANSFER_BYTES = 1024L * 1024;
+    static final long PROGRESS_MS = 1000L;
+
+    final String url;
+    final Path path;
+    final Path sidecar;
+    final int maxSegments;
+    final long minSegmentBytes;
+    final String profile;
+
+    long total = -1L;
+    String validator = null;
+    boolean ranged = false;
+    FileChannel channel;
+    final List<Segment> segments = new ArrayList<>();
+    int remaining = 0;
+    boolean finished = false;
+    volatile boolean stopped = false;
+
+    /**
+     * Create the Props - up to 4 segments of at least 8MB each on the default profile
+     * @param url to download
+     * @param path of file to write
+     * @return Props
+     */
+    public static Props props(String url, String path) {
+        return props(url, path, 4, 8L * 1024 * 1024, HttpService.DEFAULT_PROFILE);
+    }
+
+    /**
+     * Create the Props
+     * @param url to download
+     * @param path of file to write
+     * @param maxSegments maximum parallel range requests
+     * @param minSegmentBytes smallest segment worth a request of its own
+     * @param profile HttpService client profile
+     * @return Props
+     */
+    public static Props props(String url, String path, Integer maxSegments, Long minSegmentBytes, String profile) {
+        return Props.create(HttpDownloadActor.class, url, path, maxSegments, minSegmentBytes, profile);
+    }
+
+    /**
+     * Constructor
+     * @param url to download
+     * @param path of file to write
+     * @param maxSegments maximum parallel range requests
+     * @param minSegmentBytes smallest segment worth a request of its own
+     * @param profile HttpService client profile
+     */
+    public HttpDownloadActor(String url, String path, Integer maxSegments, Long minSegmentBytes, String profile) {
+        this.url = url;
+        this.path = Path.of(path);
+        this.sidecar = Path.of(path + ".progress");
+        this.maxSegments = Math.max(1, maxSegments);
+        this.minSegmentBytes = Math.max(1L, minSegmentBytes);
+        this.profile = profile;
+    }
+
+    @Override
+    protected void preStart() {
+        ActorRef me = self;
+
+        HttpService.doRequest(
+            profile,
+            request(HttpService.HEAD),
+            (Response response) -> {
+                try (response) {
+                    me.tell(new ProbedMsg(response), null);
+                }
+                return null;
+            },
+            (IOException e) -> {
+                log.warn("HEAD of {} failed: {} - downloading without ranges", url, e.getMessage());
+                me.tell(new ProbedMsg(), null);
+                return null;
+            }
+        );
+    }
+
+    @Override
+    protected void postStop() {
+        stopped = true;
+        if (! finished) {
+            saveProgress();
+            closeChannel();
+        }
+    }
+
+    @Override
+    protected ActorBehavior createBehavior() {
+        return message -> {
+            if (message instanceof SegmentDoneMsg msg) {
+                segmentDone(msg);
+            } else if (message instanceof TickMsg) {
+                if (! finished) {
+                    parent.tell(new HttpDownloadProgressMsg(url, path.toString(), downloaded(), total), self);
+                    saveProgress();
+                    scheduleIn(new TickMsg(), PROGRESS_MS);
+                }
+            } else if (message instanceof ProbedMsg msg) {
+                start(msg);
+            } else if (message instanceof ChecksumMsg msg) {
+                if (null != msg.exception) {
+                    parent.tell(new HttpDownloadFailedMsg(url, path.toString(), msg.exception), self);
+                } else
+                    parent.tell(new HttpDownloadCompleteMsg(url, path.toString(), msg.bytes, msg.sha256), self);
+                stopSelf();
+            } else {
+                super.createBehavior().onMessage(message);
+            }
+        };
+    }
+
+    void start(ProbedMsg probe) {
+        ranged = probe.ranges && probe.length > 0;
+        total = probe.length;
+        validator = probe.validator;
+
+        try {
+            Properties saved = ranged ? loadProgress() : null;
+
+            if (null != saved) {
+                channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                int n = Integer.parseInt(saved.getProperty("segments"));
+                for (int i = 0; i < n; ++i) {
+                    addSegment(i, n, Long.parseLong(saved.getProperty("segment." + i, "0")));
+                }
+                log.info("Resuming {} at {} of {} bytes", url, downloaded(), total);
+            } else {
+                channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                if (ranged) {
+                    /*
+                     * Size the (sparse) file up front - transferFrom() will not write beyond the end of a file
+                     */
+                    channel.write(ByteBuffer.wrap(new byte[1]), total - 1);
+                    int n = (int) Math.max(1L, Math.min(maxSegments, (total + minSegmentBytes - 1) / minSegmentBytes));
+                    for (int i = 0; i < n; ++i) {
+                        addSegment(i, n, 0L);
+                    }
+                } else
+                    segments.add(new Segment(0, 0L, -1L, 0L));
+            }
+        } catch (IOException | RuntimeException e) {
+            fail(e);
+            return;
+        }
+        for (Segment segment : segments) {
+            if (! segment.complete()) {
+                ++remaining;
+                fetch(segment);
+            }
+        }
+        if (0 == remaining) {
+            finish();
+        } else
+            scheduleIn(new TickMsg(), PROGRESS_MS);
+    }
+
+    void addSegment(int i, int n, long written) {
+        long size = total / n;
+        long start = i * size;
+        long end = i == n - 1 ? total : start + size;
+        segments.add(new Segment(i, start, end, written));
+    }
+
+    void fetch(Segment segment) {
+        ActorRef me = self;
+        Request.Builder builder = request(HttpService.GET).newBuilder();
+
+        if (segment.end >= 0) {
+            builder.header("Range", "bytes=" + (segment.start + segment.written.get()) + "-" + (segment.end - 1));
+            /*
+             * If-Range needs a strong validator
+             */
+            if (null != validator && ! validator.startsWith("W/")) {
+                builder.header("If-Range", validator);
+            }
+        }
+        HttpService.doRequest(
+            profile,
+            builder.build(),
+            (Response response) -> {
+                me.tell(new SegmentDoneMsg(segment.index, write(segment, response)), null);
+                return null;
+            },
+            (IOException e) -> {
+                me.tell(new SegmentDoneMsg(segment.index, e), null);
+                return null;
+            }
+        );
+    }
+
+    /*
+     * Runs on the OkHttp thread delivering the response
+     */
+    IOException write(Segment segment, Response response) {
+        try (response) {
+            if (segment.end >= 0 ? 206 != response.code() : ! response.isSuccessful()) {
+                throw new IOException("Unexpected status " + response.code() + " for " + url);
+            }
+            BufferedSource source = Objects.requireNonNull(response.body()).source();
+            long position = segment.start + segment.written.get();
+
+            while (! stopped && (segment.end < 0 || position < segment.end)) {
+                long count = segment.end < 0 ? TRANSFER_BYTES : Math.min(TRANSFER_BYTES, segment.end - position);
+                long n = channel.transferFrom(source, position, count);
+
+                if (0 == n && source.exhausted()) {
+                    break;
+                }
+                position += n;
+                segment.written.addAndGet(n);
+            }
+            if (stopped) {
+                throw new IOException("Download of " + url + " stopped");
+            }
+            if (segment.end >= 0 && position < segment.end) {
+                throw new IOException("Premature end of segment " + segment.index + " of " + url);
+            }
+            return null;
+        } catch (IOException e) {
+            return e;
+        }
+    }
+
+    void segmentDone(SegmentDoneMsg msg) {
+        if (finished) {
+            return;
+        }
+        if (null != msg.exception) {
+            fail(msg.exception);
+        }
+        else if (0 == --remaining) {
+            finish();
+        }
+    }
+
+    void fail(Exception e) {
+        log.warn("Download of {} failed: {}", url, e.getMessage());
+        finished = true;
+        stopped = true;
+        saveProgress();
+        closeChannel();
+        parent.tell(new HttpDownloadFailedMsg(url, path.toString(), e), self);
+        stopSelf();
+    }
+
+    void finish() {
+        ActorRef me = self;
+        finished = true;
+
+        try {
+            channel.force(true);
+            closeChannel();
+            Files.deleteIfExists(sidecar);
+        } catch (IOException e) {
+            me.tell(new ChecksumMsg(e), null);
+            return;
+        }
+        Thread.ofVirtual().name("dust-http-checksum").start(() -> {
+            try {
+                me.tell(new ChecksumMsg(Files.size(path), sha256(path)), null);
+            } catch (IOException e) {
+                me.tell(new ChecksumMsg(e), null);
+            }
+        });
+    }
+
+    long downloaded() {
+        return segments.stream().mapToLong(s -> s.written.get()).sum();
+    }
+
+    Request request(String method) {
+        LinkedHashMap<String, String> headers = new LinkedHashMap<>();
+        /*
+         * Lengths and ranges must refer to the bytes we write
+         */
+        headers.put("Accept-Encoding", "identity");
+        return HttpService.buildRequest(url, method, null, headers);
+    }
+
+    /*
+     * Written counts are read before forcing the channel so the sidecar never claims more than is on disk
+     */
+    void saveProgress() {
+        if (! ranged || null == channel || ! channel.isOpen()) {
+            return;
+        }
+        Properties progress = new Properties();
+        progress.setProperty("length", Long.toString(total));
+        progress.setProperty("segments", Integer.toString(segments.size()));
+        if (null != validator) {
+            progress.setProperty("validator", validator);
+        }
+        for (Segment segment : segments) {
+            progress.setProperty("segment." + segment.index, Long.toString(segment.written.get()));
+        }
+        try (OutputStream out = Files.newOutputStream(sidecar)) {
+            channel.force(false);
+            progress.store(out, url);
+        } catch (IOException e) {
+            log.warn("Cannot save progress of {}: {}", url, e.getMessage());
+        }
+    }
+
+    Properties loadProgress() {
+        if (! Files.exists(sidecar) || ! Files.exists(path)) {
+            return null;
+        }
+        Properties progress = new Properties();
+
+        try (InputStream in = Files.newInputStream(sidecar)) {
+            progress.load(in);
+        } catch (IOException e) {
+            log.warn("Cannot read progress of {}: {}", url, e.getMessage());
+            return null;
+        }
+        if (Long.toString(total).equals(progress.getProperty("length")) &&
+            Objects.equals(validator, progress.getProperty("validator"))) {
+            return progress;
+        }
+        log.info("{} has changed - restarting download", url);
+        return null;
+    }
+
+    void closeChannel() {
+        if (null != channel) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("Closing {}: {}", path, e.getMessage());
+            }
+        }
+    }
+
+    static String sha256(Path path) throws IOException {
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            ByteBuffer buffer = ByteBuffer.allocateDirect((int) TRANSFER_BYTES);
+
+            while (in.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /*
+     * Region [start, end) of the file. end is -1 if the length is not known (a single, unranged, segment).
+     */
+    static class Segment {
+        final int index;
+        final long start, end;
+        final AtomicLong written;
+
+        Segment(int index, long start, long end, long written) {
+            this.index = index;
+            this.start = start;
+            this.end = end;
+            this.written = new AtomicLong(written);
+        }
+
+        boolean complete() {
+            return end >= 0 && start + written.get() >= end;
+        }
+    }
+
+    static class ProbedMsg implements Serializable {
+        long length = -1L;
+        boolean ranges = false;
+        String validator = null;
+
+        ProbedMsg() {}
+
+        ProbedMsg(Response response) {
+            if (response.isSuccessful()) {
+                try {
+                    this.length = Long.parseLong(Objects.requireNonNull(response.header("Content-Length")).trim());
+                } catch (NullPointerException | NumberFormatException e) {
+                    this.length = -1L;
+                }
+                this.ranges = "bytes".equalsIgnoreCase(response.header("Accept-Ranges"));
+                this.validator = null != response.header("ETag") ? response.header("ETag") : response.header("Last-Modified");
+            }
+        }
+    }
+
+    static class SegmentDoneMsg implements Serializable {
+        final int index;
+        final IOException exception;
+
+        SegmentDoneMsg(int index, IOException exception) {
+            this.index = index;
+            this.exception = exception;
+        }
+    }
+
+    static class TickMsg implements Serializable {}
+
+    static class ChecksumMsg implements Serializable {
+        long bytes;
+        String sha256;
+        IOException exception;
+
+        ChecksumMsg(long bytes, String sha256) {
+            this.bytes = bytes;
+            this.sha256 = sha256;
+        }
+
+        ChecksumMsg(IOException exception) {
+            this.exception = exception;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mentalresonance.dust.http.actors;
+
+import com.mentalresonance.dust.core.actors.Actor;
+import com.mentalresonance.dust.core.actors.ActorBehavior;
+import com.mentalresonance.dust.core.actors.ActorRef;
+import com.mentalresonance.dust.core.actors.Cancellable;
+import com.mentalresonance.dust.core.actors.Props;
+import com.mentalresonance.dust.http.msgs.DeferredHttpRequestMsg;
+import com.mentalresonance.dust.http.msgs.HttpFanOutRequestMsg;
+import com.mentalresonance.dust.http.msgs.HttpFanOutResultMsg;
+import com.mentalresonance.dust.http.service.HttpRequestResponseMsg;
+import com.mentalresonance.dust.http.service.HttpService;
+import com.mentalresonance.dust.http.trait.HttpClientActor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Scatter-gather. Sent an {@link HttpFanOutRequestMsg} it makes the requests concurrently - at most maxConcurrency
+ * at once per fan-out, the rest waiting their turn - and returns the results to the sender as the message's
+ * {@link HttpFanOutRequestMsg.Mode} says. When the fan-out is done - all complete, quorum reached or deadline
+ * passed - requests still in flight are cancelled (see {@link HttpService#cancel(String, Object)}), those waiting
+ * their turn or deferred by a rate limiter are dropped and any response arriving late is closed.
+ * <p>
+ * In ALL and QUORUM modes responses are materialized, as they are held until the aggregate is sent. Any number of
+ * fan-outs may be in progress at once.
+ * </p>
+ */
+@Slf4j
+public class HttpFanOutActor extends Actor implements HttpClientActor {
+
+    final int maxConcurrency;
+    final Map<FanOutKey, FanOut> fanOuts = new HashMap<>();
+
+    /**
+     * Create the Props
+     * @param maxConcurrency most requests of one fan-out in flight
+     * @return Props
+     */
+    public static Props props(Integer maxConcurrency) {
+        return Props.create(HttpFanOutActor.class, maxConcurrency);
+    }
+
+    /**
+     * Constructor
+     * @param maxConcurrency most requests of one fan-out in flight
+     */
+    public HttpFanOutActor(Integer maxConcurrency) {
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+    }
+
+    @Override
+    protected ActorBehavior createBehavior() {
+        return message -> {
+            if (message instanceof HttpFanOutRequestMsg msg) {
+                start(msg);
+            } else if (message instanceof HttpRequestResponseMsg msg && sender == self) {
+                completed(msg);
+            } else if (message instanceof DeadlineMsg msg) {
+                FanOut fanOut = fanOuts.get(msg.key);
+                if (null != fanOut) {
+                    finish(fanOut, true);
+                }
+            } else if (message instanceof DeferredHttpRequestMsg msg) {
+                if (msg.msg.tag instanceof Slot slot && fanOuts.containsKey(slot.key)) {
+                    request(msg);
+                }
+            } else {
+                super.createBehavior().onMessage(message);
+            }
+        };
+    }
+
+    @Override
+    protected void postStop() {
+        new ArrayList<>(fanOuts.values()).forEach(fanOut -> finish(fanOut, false));
+    }
+
+    void start(HttpFanOutRequestMsg msg) {
+        FanOut fanOut = new FanOut(new FanOutKey(UUID.randomUUID().toString()), msg, sender);
+
+        if (msg.getRequests().isEmpty()) {
+            sender.tell(new HttpFanOutResultMsg(List.of(), 0, 0, 0, false, msg.getTag()), self);
+            return;
+        }
+        fanOuts.put(fanOut.key, fanOut);
+        for (int i = 0; i < msg.getRequests().size(); ++i) {
+            fanOut.pending.add(i);
+        }
+        if (msg.getDeadlineMs() > 0) {
+            fanOut.deadline = scheduleIn(new DeadlineMsg(fanOut.key), msg.getDeadlineMs());
+        }
+        pump(fanOut);
+    }
+
+    /*
+     * The request is tagged with the fan-out's key so stragglers can be cancelled, and travels with the key and
+     * its index as the tag of the message we send
+     */
+    void pump(FanOut fanOut) {
+        while (! fanOut.pending.isEmpty() && fanOut.inFlight < maxConcurrency) {
+            int index = fanOut.pending.poll();
+            HttpRequestResponseMsg msg = fanOut.msg.getRequests().get(index);
+            HttpRequestResponseMsg forward = new HttpRequestResponseMsg(
+                self,
+                msg.request.newBuilder().tag(FanOutKey.class, fanOut.key).build(),
+                new Slot(fanOut.key, index)
+            );
+            forward.profile = msg.profile;
+            forward.materialize = msg.materialize || HttpFanOutRequestMsg.Mode.STREAM != fanOut.msg.getMode();
+            ++fanOut.inFlight;
+            request(forward);
+        }
+    }
+
+    void completed(HttpRequestResponseMsg forward) {
+        Slot slot = (Slot) forward.tag;
+        FanOut fanOut = fanOuts.get(slot.key);
+
+        if (null == fanOut) {
+            if (null != forward.response) {
+                forward.response.close();
+            }
+            return;
+        }
+        HttpRequestResponseMsg msg = fanOut.msg.getRequests().get(slot.index);
+        msg.response = forward.response;
+        msg.data = forward.data;
+        msg.exception = forward.exception;
+
+        --fanOut.inFlight;
+        fanOut.results[slot.index] = msg;
+        ++fanOut.completed;
+        if (succeeded(msg)) {
+            ++fanOut.succeeded;
+        }
+        if (HttpFanOutRequestMsg.Mode.STREAM == fanOut.msg.getMode()) {
+            fanOut.client.tell(msg, self);
+        }
+        if (fanOut.completed == fanOut.results.length ||
+            (HttpFanOutRequestMsg.Mode.QUORUM == fanOut.msg.getMode() && fanOut.succeeded >= fanOut.msg.getQuorum())) {
+            finish(fanOut, false);
+        } else
+            pump(fanOut);
+    }
+
+    void finish(FanOut fanOut, boolean timedOut) {
+        HttpFanOutRequestMsg msg = fanOut.msg;
+        List<HttpRequestResponseMsg> results = new ArrayList<>();
+
+        fanOuts.remove(fanOut.key);
+        if (null != fanOut.deadline) {
+            fanOut.deadline.cancel();
+        }
+        if (fanOut.inFlight > 0) {
+            /*
+             * Stragglers may be on several profiles
+             */
+            Set<String> profiles = new HashSet<>();
+            for (HttpRequestResponseMsg request : msg.getRequests()) {
+                profiles.add(Objects.requireNonNullElse(request.profile, httpProfile()));
+            }
+            profiles.forEach(profile -> HttpService.cancel(profile, fanOut.key));
+        }
+        if (HttpFanOutRequestMsg.Mode.STREAM != msg.getMode()) {
+            for (HttpRequestResponseMsg result : fanOut.results) {
+                if (null != result) {
+                    results.add(result);
+                }
+            }
+        }
+        if (timedOut) {
+            log.info("Fan-out {} timed out with {}/{} complete", msg.getTag(), fanOut.completed, fanOut.results.length);
+        }
+        fanOut.client.tell(
+            new HttpFanOutResultMsg(results, fanOut.results.length, fanOut.completed, fanOut.succeeded, timedOut, msg.getTag()),
+            self
+        );
+    }
+
+    static boolean succeeded(HttpRequestResponseMsg msg) {
+        return null == msg.exception &&
+            (null != msg.data ? msg.data.isSuccessful() : null != msg.response && msg.response.isSuccessful());
+    }
+
+    /**
+     * Identifies a fan-out - as the tag of its requests and in the slots of its replies
+     * @param id unique id
+     */
+    record FanOutKey(String id) implements Serializable {}
+
+    record Slot(FanOutKey key, int index) implements Serializable {}
+
+    record DeadlineMsg(FanOutKey key) implements Serializable {}
+
+    static class FanOut {
+        final FanOutKey key;
+        final HttpFanOutRequestMsg msg;
+        final ActorRef client;
+        final HttpRequestResponseMsg[] results;
+        final ArrayDeque<Integer> pending = new ArrayDeque<>();
+        int inFlight = 0;
+        int completed = 0;
+        int succeeded = 0;
+        Cancellable deadline = null;
+
+        FanOut(FanOutKey key, HttpFanOutRequestMsg msg, ActorRef client) {
+            this.key = key;
+            this.msg = msg;
+            this.client = client;
+            this.results = new HttpRequestResponseMsg[msg.getRequests().size()];
+        }
+    }
+}
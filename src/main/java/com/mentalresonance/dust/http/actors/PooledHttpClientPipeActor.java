@@ -0,0 +1,146 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mentalresonance.dust.http.actors;
+
+import com.mentalresonance.dust.core.actors.Actor;
+import com.mentalresonance.dust.core.actors.ActorBehavior;
+import com.mentalresonance.dust.core.actors.Props;
+import com.mentalresonance.dust.http.msgs.DeferredHttpRequestMsg;
+import com.mentalresonance.dust.http.service.HttpRequestResponseMsg;
+import com.mentalresonance.dust.http.service.ReorderBuffer;
+import com.mentalresonance.dust.http.trait.HttpClientActor;
+
+import java.io.Serializable;
+import java.util.ArrayDeque;
+
+/**
+ * A pipe stage like {@link HttpClientPipeActor} - requests in, responses to the <b>parent</b> - with at most
+ * parallelism requests in flight. Requests are asynchronous so one Actor drives them all and the rest wait here in
+ * arrival order.
+ * <p>
+ * With preserveOrder responses go to the parent in the order their requests arrived, whatever order they complete
+ * in, so downstream stages see a deterministic stream. A response waiting on a slower predecessor is held in a
+ * reorder buffer - window bounds requests in flight plus responses held, so a stalled request throttles the stage
+ * rather than growing the buffer. Held responses keep their connections unless materialized (see
+ * {@link HttpClientActor#materializeResponses()}).
+ * </p>
+ * The parent is sent the original {@link HttpRequestResponseMsg}, filled in.
+ */
+public class PooledHttpClientPipeActor extends Actor implements HttpClientActor {
+
+    final int parallelism;
+    final int window;
+    final boolean preserveOrder;
+
+    final ArrayDeque<HttpRequestResponseMsg> pending = new ArrayDeque<>();
+    final ReorderBuffer<HttpRequestResponseMsg> reorder = new ReorderBuffer<>();
+    long seq = 0L;
+    int inFlight = 0;
+
+    /**
+     * Create the Props
+     * @param parallelism most requests in flight
+     * @param window most requests in flight plus responses held for ordering
+     * @param preserveOrder deliver responses in request order
+     * @return Props
+     */
+    public static Props props(Integer parallelism, Integer window, Boolean preserveOrder) {
+        return Props.create(PooledHttpClientPipeActor.class, parallelism, window, preserveOrder);
+    }
+
+    /**
+     * Create the Props for unordered delivery
+     * @param parallelism most requests in flight
+     * @return Props
+     */
+    public static Props props(Integer parallelism) {
+        return props(parallelism, parallelism, false);
+    }
+
+    /**
+     * Constructor
+     * @param parallelism most requests in flight
+     * @param window most requests in flight plus responses held for ordering
+     * @param preserveOrder deliver responses in request order
+     */
+    public PooledHttpClientPipeActor(Integer parallelism, Integer window, Boolean preserveOrder) {
+        this.parallelism = Math.max(1, parallelism);
+        this.window = Math.max(this.parallelism, window);
+        this.preserveOrder = preserveOrder;
+    }
+
+    @Override
+    protected ActorBehavior createBehavior() {
+        return message -> {
+            if (message instanceof HttpRequestResponseMsg msg) {
+                if (sender == self) {
+                    completed(msg);
+                } else {
+                    pending.add(msg);
+                }
+                pump();
+            } else if (message instanceof DeferredHttpRequestMsg msg) {
+                request(msg);
+            } else {
+                super.createBehavior().onMessage(message);
+            }
+        };
+    }
+
+    @Override
+    protected void postStop() {
+        reorder.drain().forEach(PooledHttpClientPipeActor::close);
+    }
+
+    void pump() {
+        while (! pending.isEmpty() && inFlight < parallelism && inFlight + reorder.size() < window) {
+            HttpRequestResponseMsg msg = pending.poll();
+            HttpRequestResponseMsg forward = new HttpRequestResponseMsg(self, msg.request, new Sequenced(seq++, msg));
+            forward.profile = msg.profile;
+            forward.materialize = msg.materialize;
+            ++inFlight;
+            request(forward);
+        }
+    }
+
+    /*
+     * The original message travels, with its sequence number, as the tag of the request we made
+     */
+    void completed(HttpRequestResponseMsg forward) {
+        Sequenced sequenced = (Sequenced) forward.tag;
+        HttpRequestResponseMsg msg = sequenced.msg;
+
+        --inFlight;
+        msg.response = forward.response;
+        msg.data = forward.data;
+        msg.exception = forward.exception;
+
+        if (preserveOrder) {
+            reorder.add(sequenced.seq, msg).forEach(ready -> parent.tell(ready, self));
+        } else
+            parent.tell(msg, self);
+    }
+
+    static void close(HttpRequestResponseMsg msg) {
+        if (null != msg.response) {
+            msg.response.close();
+        }
+    }
+
+    record Sequenced(long seq, HttpRequestResponseMsg msg) implements Serializable {}
+}
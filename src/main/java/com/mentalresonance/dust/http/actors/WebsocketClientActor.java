@@ -18,22 +18,57 @@
 package com.mentalresonance.dust.http.actors;
 
 import com.mentalresonance.dust.core.actors.Actor;
+import com.mentalresonance.dust.core.actors.ActorBehavior;
 import com.mentalresonance.dust.core.actors.Props;
+import com.mentalresonance.dust.http.msgs.WebsocketBinaryMsg;
+import com.mentalresonance.dust.http.msgs.WebsocketCloseMsg;
+import com.mentalresonance.dust.http.msgs.WebsocketConnectFailedMsg;
+import com.mentalresonance.dust.http.msgs.WebsocketOpenMsg;
+import com.mentalresonance.dust.http.msgs.WebsocketPongMsg;
+import com.mentalresonance.dust.http.msgs.WebsocketSendResultMsg;
+import com.mentalresonance.dust.http.msgs.WebsocketTextMsg;
+import com.mentalresonance.dust.http.service.MailboxWebsocketHandler;
 import com.mentalresonance.dust.http.service.WebsocketClientEndpoint;
+import com.mentalresonance.dust.http.service.WebsocketConnector;
 import com.mentalresonance.dust.http.service.WebsocketHandler;
+import com.mentalresonance.dust.http.service.WebsocketHeartbeat;
+import com.mentalresonance.dust.http.service.WebsocketOptions;
+import com.mentalresonance.dust.http.service.WebsocketWriter;
+import lombok.extern.slf4j.Slf4j;
 
 import javax.websocket.CloseReason;
 import javax.websocket.Session;
+import java.io.IOException;
+import java.io.Serializable;
 import java.net.URI;
+import java.nio.ByteBuffer;
 
 /**
  * An Actor to be subclassed. It takes the URI of a websocket server and provides callbacks for onOpen, onClose
- * and onMessage
+ * and onMessage - and (by overriding the {@link WebsocketHandler} defaults) onBinaryMessage and partial messages.
+ * <p>
+ * By default the callbacks are made on the websocket's threads. With {@link WebsocketOptions#mailbox} they are made
+ * on the Actor's own thread from messages in its mailbox - all of them, including partial messages and onPong.
+ * </p>
+ * <p>
+ * The connection is made in the background, after the Actor starts, through a shared
+ * {@link com.mentalresonance.dust.http.service.WebsocketService} container - see {@link WebsocketConnector}. With
+ * {@link WebsocketOptions#reconnect} it is remade when lost and messages sent with {@link #subscribe(String)} are
+ * sent again. {@link #onConnectFailed(Throwable)} is called when no (more) attempts will be made.
+ * </p>
+ * <p>
+ * Sends go through a {@link WebsocketWriter} bounded by the options. The outcome of a tagged send, and any failure,
+ * arrives as a {@link WebsocketSendResultMsg} passed to {@link #onSendResult(WebsocketSendResultMsg)}.
+ * </p>
  */
+@Slf4j
 abstract public class WebsocketClientActor extends Actor implements WebsocketHandler {
 
     URI uri;
     WebsocketClientEndpoint endpoint;
+    WebsocketOptions options;
+    MailboxWebsocketHandler inbound = null;
+    WebsocketConnector connector = null;
 
     /**
      * Create the Actor as a client ot
@@ -48,8 +83,84 @@ abstract public class WebsocketClientActor extends Actor implements WebsocketHan
      * @param uri of Websocket Server
      */
     public WebsocketClientActor(URI uri) {
+        this(uri, new WebsocketOptions());
+    }
+    /**
+     * Constructor. The connection is started in preStart(), or by the first send or subscription if a subclass
+     * overrides preStart() without calling super.preStart().
+     * @param uri of Websocket Server
+     * @param options of the client
+     */
+    public WebsocketClientActor(URI uri, WebsocketOptions options) {
         this.uri = uri;
-        endpoint = new WebsocketClientEndpoint(uri, this);
+        this.options = options;
+    }
+
+    @Override
+    protected void preStart() throws Exception {
+        connector();
+    }
+
+    /*
+     * Made, and the connection started, on first use - it needs self, so cannot be made in the constructor
+     */
+    WebsocketConnector connector() {
+        if (null == connector) {
+            WebsocketHandler handler = this;
+
+            if (options.isMailbox()) {
+                inbound = new MailboxWebsocketHandler(self, options, partialMessages());
+                handler = inbound;
+            }
+            connector = new WebsocketConnector(uri, handler, self, options);
+            endpoint = connector.getEndpoint();
+            connector.connect();
+        }
+        return connector;
+    }
+
+    @Override
+    protected void postStop() throws Exception {
+        if (null != connector) {
+            connector.close();
+        }
+    }
+
+    @Override
+    protected ActorBehavior createBehavior() {
+        return message -> {
+            if (message instanceof WebsocketSendResultMsg msg) {
+                onSendResult(msg);
+            }
+            else if (null == inbound) {
+                super.createBehavior().onMessage(message);
+            } else if (message instanceof WebsocketTextMsg msg) {
+                inbound.consumed();
+                if (msg.isPart())
+                    onMessagePart(msg.getText(), msg.isLast());
+                else
+                    onMessage(msg.getText());
+            } else if (message instanceof WebsocketBinaryMsg msg) {
+                inbound.consumed();
+                if (msg.isPart())
+                    onBinaryMessagePart(msg.buffer(), msg.isLast());
+                else
+                    onBinaryMessage(msg.buffer());
+            } else if (message instanceof WebsocketPongMsg msg) {
+                onPong(msg.buffer());
+            } else if (message instanceof WebsocketOpenMsg) {
+                onOpen(inbound.getSession());
+            } else if (message instanceof WebsocketConnectFailedMsg msg) {
+                onConnectFailed(msg.getCause());
+            } else if (message instanceof WebsocketCloseMsg msg) {
+                onClose(
+                    inbound.getSession(),
+                    new CloseReason(CloseReason.CloseCodes.getCloseCode(msg.getCode()), msg.getReason())
+                );
+            } else {
+                super.createBehavior().onMessage(message);
+            }
+        };
     }
     /**
      * To be overridden
@@ -67,11 +178,86 @@ abstract public class WebsocketClientActor extends Actor implements WebsocketHan
      * @param message from the websocket server
      */
     public abstract void onMessage(String message);
+    /**
+     * Outcome of a tagged send or a failed send. By default failures are logged.
+     * @param msg the outcome
+     */
+    protected void onSendResult(WebsocketSendResultMsg msg) {
+        if (! msg.isOk()) {
+            log.warn("{}: websocket send {} failed: {}", self.path, msg.getTag(), msg.getException().getMessage());
+        }
+    }
     /**
      * Send a message to the server
      * @param msg the message
      */
     protected void sendMessage(String msg) {
-        endpoint.sendMessage(msg);
+        writer().send(msg, null);
+    }
+    /**
+     * Send a message to the server, its outcome coming back to {@link #onSendResult(WebsocketSendResultMsg)}
+     * @param msg the message
+     * @param tag identifying the send in the outcome
+     */
+    protected void sendMessage(String msg, Serializable tag) {
+        writer().send(msg, tag);
+    }
+    /**
+     * Send a binary message to the server. Override {@link #onBinaryMessage(ByteBuffer)} to receive them.
+     * @param msg the message - the buffer must not be changed until sent
+     */
+    protected void sendMessage(ByteBuffer msg) {
+        writer().send(msg, null);
+    }
+    /**
+     * Send a binary message to the server, its outcome coming back to {@link #onSendResult(WebsocketSendResultMsg)}
+     * @param msg the message - the buffer must not be changed until sent
+     * @param tag identifying the send in the outcome
+     */
+    protected void sendMessage(ByteBuffer msg, Serializable tag) {
+        writer().send(msg, tag);
+    }
+    /**
+     * @return the writer for outbound messages - in flight and queued counts are on it
+     */
+    protected WebsocketWriter writer() {
+        return connector().getWriter();
+    }
+    /**
+     * @return the heartbeat, with its round trip times - null if the options have none
+     */
+    protected WebsocketHeartbeat heartbeat() {
+        return connector().getHeartbeat();
+    }
+    /**
+     * Send msg now, if connected, and again on every reconnection
+     * @param msg the subscription
+     */
+    protected void subscribe(String msg) {
+        connector().subscribe(msg);
+    }
+    /**
+     * Stop sending msg on reconnection
+     * @param msg as given to {@link #subscribe(String)}
+     */
+    protected void unsubscribe(String msg) {
+        connector().unsubscribe(msg);
+    }
+    /**
+     * The connection could not be made, or remade, and no more attempts will be. By default logged.
+     * @param cause of the last failure
+     */
+    @Override
+    public void onConnectFailed(Throwable cause) {
+        log.error("{}: websocket {} failed: {}", self.path, uri, cause.getMessage());
+    }
+    /**
+     * Send part of a binary message to the server - blocking until sent
+     * @param part of the message
+     * @param last true if the final part
+     * @throws IOException on failure
+     */
+    protected void sendMessagePart(ByteBuffer part, boolean last) throws IOException {
+        connector().getEndpoint().sendMessagePart(part, last);
     }
 }
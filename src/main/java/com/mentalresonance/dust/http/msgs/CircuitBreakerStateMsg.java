@@ -0,0 +1,54 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mentalresonance.dust.http.msgs;
+
+import com.mentalresonance.dust.http.service.CircuitBreaker;
+import lombok.Getter;
+
+import java.io.Serializable;
+
+/**
+ * Sent to subscribers of a {@link CircuitBreaker} when the circuit to a host changes state
+ */
+@Getter
+public class CircuitBreakerStateMsg implements Serializable {
+    /**
+     * Host of the circuit
+     */
+    String host;
+    /**
+     * Previous state
+     */
+    CircuitBreaker.State from;
+    /**
+     * New state
+     */
+    CircuitBreaker.State to;
+
+    /**
+     * Constructor
+     * @param host of the circuit
+     * @param from previous state
+     * @param to new state
+     */
+    public CircuitBreakerStateMsg(String host, CircuitBreaker.State from, CircuitBreaker.State to) {
+        this.host = host;
+        this.from = from;
+        this.to = to;
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mentalresonance.dust.http.msgs;
+
+import com.mentalresonance.dust.http.service.HttpRequestResponseMsg;
+
+import java.io.Serializable;
+
+/**
+ * A request held back by an {@link com.mentalresonance.dust.http.trait.HttpClientActor}'s rate limiter. It is
+ * scheduled back to the Actor once its permit is due and the Actor's behavior should pass it to
+ * {@link com.mentalresonance.dust.http.trait.HttpClientActor#request(DeferredHttpRequestMsg)}.
+ */
+public class DeferredHttpRequestMsg implements Serializable {
+    /**
+     * The deferred request
+     */
+    public HttpRequestResponseMsg msg;
+
+    /**
+     * Constructor
+     * @param msg the deferred request
+     */
+    public DeferredHttpRequestMsg(HttpRequestResponseMsg msg) {
+        this.msg = msg;
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mentalresonance.dust.http.msgs;
+
+import com.mentalresonance.dust.http.service.HttpBodyStream;
+import lombok.Getter;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+
+/**
+ * A chunk of a streamed response body. Only the first length bytes of data are valid. The buffer is pooled -
+ * call {@link #release()} once done with it and do not hold on to it afterwards.
+ */
+@Getter
+public class HttpBodyChunkMsg implements Serializable {
+    /**
+     * The buffer
+     */
+    byte[] data;
+    /**
+     * Valid bytes in data
+     */
+    int length;
+    /**
+     * Offset of the chunk in the body
+     */
+    long offset;
+    /**
+     * The stream - grant more credit with this
+     */
+    transient HttpBodyStream stream;
+
+    /**
+     * Constructor
+     * @param stream it is from
+     * @param data buffer
+     * @param length valid bytes in buffer
+     * @param offset in the body
+     */
+    public HttpBodyChunkMsg(HttpBodyStream stream, byte[] data, int length, long offset) {
+        this.stream = stream;
+        this.data = data;
+        this.length = length;
+        this.offset = offset;
+    }
+
+    /**
+     * @return read only view of the valid bytes
+     */
+    public ByteBuffer buffer() {
+        return ByteBuffer.wrap(data, 0, length).asReadOnlyBuffer();
+    }
+
+    /**
+     * Return the buffer to the pool
+     */
+    public void release() {
+        if (null != stream && null != data) {
+            stream.release(data);
+            data = null;
+        }
+    }
+}
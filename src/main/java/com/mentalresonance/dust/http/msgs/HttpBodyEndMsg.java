@@ -0,0 +1,55 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mentalresonance.dust.http.msgs;
+
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * A streamed response body has ended - either completely or in error. If the request itself failed this is sent
+ * without a preceding {@link HttpBodyStartMsg}.
+ */
+@Getter
+public class HttpBodyEndMsg implements Serializable {
+    /**
+     * Bytes of body streamed
+     */
+    long bytes;
+    /**
+     * Exception if it failed, else null
+     */
+    IOException exception;
+    /**
+     * Tag of the request
+     */
+    Serializable tag;
+
+    /**
+     * Constructor
+     * @param bytes streamed
+     * @param exception or null
+     * @param tag of the request
+     */
+    public HttpBodyEndMsg(long bytes, IOException exception, Serializable tag) {
+        this.bytes = bytes;
+        this.exception = exception;
+        this.tag = tag;
+    }
+}
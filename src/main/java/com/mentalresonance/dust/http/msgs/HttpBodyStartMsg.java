@@ -0,0 +1,69 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mentalresonance.dust.http.msgs;
+
+import com.mentalresonance.dust.http.service.HttpBodyStream;
+import lombok.Getter;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Response headers have arrived and the body will follow as {@link HttpBodyChunkMsg}s as credit is granted on the
+ * stream, ending with an {@link HttpBodyEndMsg}.
+ */
+@Getter
+public class HttpBodyStartMsg implements Serializable {
+    /**
+     * Status code
+     */
+    int code;
+    /**
+     * Headers of the response
+     */
+    Map<String, List<String>> headers;
+    /**
+     * Content length or -1 if not known
+     */
+    long contentLength;
+    /**
+     * Tag of the request
+     */
+    Serializable tag;
+    /**
+     * The stream - grant credit and cancel with this
+     */
+    transient HttpBodyStream stream;
+
+    /**
+     * Constructor
+     * @param code status
+     * @param headers of response
+     * @param contentLength of body or -1
+     * @param tag of the request
+     * @param stream handle
+     */
+    public HttpBodyStartMsg(int code, Map<String, List<String>> headers, long contentLength, Serializable tag, HttpBodyStream stream) {
+        this.code = code;
+        this.headers = headers;
+        this.contentLength = contentLength;
+        this.tag = tag;
+        this.stream = stream;
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mentalresonance.dust.http.msgs;
+
+import lombok.Getter;
+
+import java.io.Serializable;
+
+/**
+ * A download has completed. Sent by an {@link com.mentalresonance.dust.http.actors.HttpDownloadActor} to its parent.
+ */
+@Getter
+public class HttpDownloadCompleteMsg implements Serializable {
+    /**
+     * Url downloaded
+     */
+    String url;
+    /**
+     * File written
+     */
+    String path;
+    /**
+     * Size of file
+     */
+    long bytes;
+    /**
+     * Hex SHA-256 of the file
+     */
+    String sha256;
+
+    /**
+     * Constructor
+     * @param url downloaded
+     * @param path written
+     * @param bytes size
+     * @param sha256 hex checksum
+     */
+    public HttpDownloadCompleteMsg(String url, String path, long bytes, String sha256) {
+        this.url = url;
+        this.path = path;
+        this.bytes = bytes;
+        this.sha256 = sha256;
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mentalresonance.dust.http.msgs;
+
+import lombok.Getter;
+
+import java.io.Serializable;
+
+/**
+ * A download has failed. Sent by an {@link com.mentalresonance.dust.http.actors.HttpDownloadActor} to its parent.
+ * Where the server supports ranges the partial file is kept and a new download of the same url to the same path
+ * resumes it.
+ */
+@Getter
+public class HttpDownloadFailedMsg implements Serializable {
+    /**
+     * Url being downloaded
+     */
+    String url;
+    /**
+     * File being written
+     */
+    String path;
+    /**
+     * Cause
+     */
+    Exception exception;
+
+    /**
+     * Constructor
+     * @param url being downloaded
+     * @param path being written
+     * @param exception cause
+     */
+    public HttpDownloadFailedMsg(String url, String path, Exception exception) {
+        this.url = url;
+        this.path = path;
+        this.exception = exception;
+    }
+}
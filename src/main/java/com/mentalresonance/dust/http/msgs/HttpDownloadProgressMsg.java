@@ -0,0 +1,60 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mentalresonance.dust.http.msgs;
+
+import lombok.Getter;
+
+import java.io.Serializable;
+
+/**
+ * Progress of a download. Sent periodically by an {@link com.mentalresonance.dust.http.actors.HttpDownloadActor}
+ * to its parent.
+ */
+@Getter
+public class HttpDownloadProgressMsg implements Serializable {
+    /**
+     * Url being downloaded
+     */
+    String url;
+    /**
+     * File being written
+     */
+    String path;
+    /**
+     * Bytes on disk so far - including any from an earlier, interrupted, attempt
+     */
+    long bytes;
+    /**
+     * Total size or -1 if not known
+     */
+    long total;
+
+    /**
+     * Constructor
+     * @param url being downloaded
+     * @param path being written
+     * @param bytes so far
+     * @param total size or -1
+     */
+    public HttpDownloadProgressMsg(String url, String path, long bytes, long total) {
+        this.url = url;
+        this.path = path;
+        this.bytes = bytes;
+        this.total = total;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mentalresonance.dust.http.msgs;
+
+import com.mentalresonance.dust.http.service.HttpRequestResponseMsg;
+import lombok.Getter;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Ask an {@link com.mentalresonance.dust.http.actors.HttpFanOutActor} to make a set of requests concurrently. Each
+ * {@link HttpRequestResponseMsg}'s tag identifies its result.
+ */
+@Getter
+public class HttpFanOutRequestMsg implements Serializable {
+
+    /**
+     * How results are returned
+     */
+    public enum Mode {
+        /**
+         * Each result as it arrives, then an {@link HttpFanOutResultMsg} with none
+         */
+        STREAM,
+        /**
+         * One {@link HttpFanOutResultMsg} once every request is done
+         */
+        ALL,
+        /**
+         * One {@link HttpFanOutResultMsg} as soon as quorum requests have succeeded - the rest are cancelled
+         */
+        QUORUM
+    }
+
+    /**
+     * The requests
+     */
+    final List<HttpRequestResponseMsg> requests;
+    /**
+     * How results are returned
+     */
+    final Mode mode;
+    /**
+     * Successes needed in QUORUM mode
+     */
+    final int quorum;
+    /**
+     * ms after which outstanding requests are cancelled and what has arrived is returned. 0 for none.
+     */
+    final long deadlineMs;
+    /**
+     * Returned on the {@link HttpFanOutResultMsg}
+     */
+    final Serializable tag;
+
+    /**
+     * Constructor
+     * @param requests to make
+     * @param mode how results are returned
+     * @param quorum successes needed in QUORUM mode
+     * @param deadlineMs after which stragglers are cancelled - 0 for none
+     * @param tag returned on the result
+     */
+    public HttpFanOutRequestMsg(List<HttpRequestResponseMsg> requests, Mode mode, int quorum, long deadlineMs, Serializable tag) {
+        this.requests = requests;
+        this.mode = mode;
+        this.quorum = quorum;
+        this.deadlineMs = deadlineMs;
+        this.tag = tag;
+    }
+
+    /**
+     * Wait for all requests
+     * @param requests to make
+     * @param deadlineMs after which stragglers are cancelled - 0 for none
+     * @param tag returned on the result
+     */
+    public HttpFanOutRequestMsg(List<HttpRequestResponseMsg> requests, long deadlineMs, Serializable tag) {
+        this(requests, Mode.ALL, requests.size(), deadlineMs, tag);
+    }
+}
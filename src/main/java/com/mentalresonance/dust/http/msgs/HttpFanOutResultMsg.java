@@ -0,0 +1,82 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mentalresonance.dust.http.msgs;
+
+import com.mentalresonance.dust.http.service.HttpRequestResponseMsg;
+import lombok.Getter;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Outcome of an {@link HttpFanOutRequestMsg}. Results are in request order and only those completed are present -
+ * empty in STREAM mode, where they have already been sent.
+ */
+@Getter
+public class HttpFanOutResultMsg implements Serializable {
+
+    /**
+     * Completed requests, filled in
+     */
+    final List<HttpRequestResponseMsg> results;
+    /**
+     * Requests asked for
+     */
+    final int requested;
+    /**
+     * Requests completed
+     */
+    final int completed;
+    /**
+     * Completed with a 2xx response
+     */
+    final int succeeded;
+    /**
+     * The deadline passed before the fan-out was done
+     */
+    final boolean timedOut;
+    /**
+     * Tag of the {@link HttpFanOutRequestMsg}
+     */
+    final Serializable tag;
+
+    /**
+     * Constructor
+     * @param results completed requests
+     * @param requested requests asked for
+     * @param completed requests completed
+     * @param succeeded requests completed with 2xx
+     * @param timedOut true if the deadline passed
+     * @param tag of the request
+     */
+    public HttpFanOutResultMsg(List<HttpRequestResponseMsg> results, int requested, int completed, int succeeded, boolean timedOut, Serializable tag) {
+        this.results = results;
+        this.requested = requested;
+        this.completed = completed;
+        this.succeeded = succeeded;
+        this.timedOut = timedOut;
+        this.tag = tag;
+    }
+
+    /**
+     * @return true if every request completed
+     */
+    public boolean isComplete() {
+        return completed == requested;
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mentalresonance.dust.http.msgs;
+
+import okio.ByteString;
+
+/**
+ * A server-sent data packet holding the raw UTF-8 bytes of its id and data, which are only decoded (once) if
+ * {@link #getId()} or {@link #getData()} is called. Forward {@link #getRawData()} as is to avoid decoding at all.
+ * The type is interned by the parser.
+ */
+public class LazyStreamingHttpDataMsg extends StreamingHttpDataMsg {
+    /**
+     * Raw id or null
+     */
+    ByteString rawId;
+    /**
+     * Raw data
+     */
+    ByteString rawData;
+
+    /**
+     * Constructor
+     * @param rawId of packet or null
+     * @param type of packet or null
+     * @param rawData of packet
+     */
+    public LazyStreamingHttpDataMsg(ByteString rawId, String type, ByteString rawData) {
+        super(null, type, "");
+        this.rawId = rawId;
+        this.rawData = rawData;
+        this.data = null;
+    }
+
+    /**
+     * @return raw id or null
+     */
+    public ByteString getRawId() {
+        return rawId;
+    }
+
+    /**
+     * @return raw data
+     */
+    public ByteString getRawData() {
+        return rawData;
+    }
+
+    /**
+     * @return id decoded on first call
+     */
+    @Override
+    public String getId() {
+        return null != rawId ? rawId.utf8() : null;
+    }
+
+    /**
+     * @return data decoded on first call
+     */
+    @Override
+    public String getData() {
+        return rawData.utf8();
+    }
+}
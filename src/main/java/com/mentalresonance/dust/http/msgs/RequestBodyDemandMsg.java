@@ -0,0 +1,48 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mentalresonance.dust.http.msgs;
+
+import com.mentalresonance.dust.http.service.ActorRequestBody;
+import lombok.Getter;
+
+import java.io.Serializable;
+
+/**
+ * Sent to the Actor feeding an {@link ActorRequestBody} - it may now offer up to n more chunks.
+ */
+@Getter
+public class RequestBodyDemandMsg implements Serializable {
+    /**
+     * The body to offer chunks to
+     */
+    transient ActorRequestBody body;
+    /**
+     * Chunks wanted
+     */
+    int n;
+
+    /**
+     * Constructor
+     * @param body being fed
+     * @param n chunks wanted
+     */
+    public RequestBodyDemandMsg(ActorRequestBody body, int n) {
+        this.body = body;
+        this.n = n;
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mentalresonance.dust.http.msgs;
+
+import lombok.Getter;
+
+import java.io.Serializable;
+
+/**
+ * A reconnecting Server Sent stream dropped and has been re-established. Events after lastEventId which the server
+ * did not replay in response to Last-Event-ID have been lost.
+ */
+@Getter
+public class StreamingHttpGapMsg implements Serializable {
+    /**
+     * Id of the last event received before the drop - null if none had an id
+     */
+    String lastEventId;
+    /**
+     * How long the stream was down in ms
+     */
+    long downMs;
+    /**
+     * Connection attempts it took
+     */
+    int attempts;
+
+    /**
+     * Constructor
+     * @param lastEventId last id seen
+     * @param downMs time down
+     * @param attempts to reconnect
+     */
+    public StreamingHttpGapMsg(String lastEventId, long downMs, int attempts) {
+        this.lastEventId = lastEventId;
+        this.downMs = downMs;
+        this.attempts = attempts;
+    }
+}
@@ -17,16 +17,38 @@
 
 package com.mentalresonance.dust.http.msgs;
 
+import com.mentalresonance.dust.http.service.StreamingHttpFlow;
+
 import java.io.Serializable;
 
 /**
  * Sent when the Server Sent stream opens
  */
 public class StreamingHttpStartMsg implements Serializable {
+    /**
+     * Flow control of the stream - null if not flow controlled
+     */
+    transient StreamingHttpFlow flow = null;
+
     /**
      * Constructor
      */
     public StreamingHttpStartMsg() {
 
     }
+
+    /**
+     * Constructor
+     * @param flow control of the stream
+     */
+    public StreamingHttpStartMsg(StreamingHttpFlow flow) {
+        this.flow = flow;
+    }
+
+    /**
+     * @return flow control of the stream - grant credit with this. null if not flow controlled.
+     */
+    public StreamingHttpFlow getFlow() {
+        return flow;
+    }
 }
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mentalresonance.dust.http.msgs;
+
+import lombok.Getter;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+
+/**
+ * A binary message from the websocket - or part of one if the handler wants partial messages
+ */
+@Getter
+public class WebsocketBinaryMsg implements Serializable {
+    /**
+     * The message
+     */
+    byte[] data;
+    /**
+     * True if only part of a message
+     */
+    boolean part = false;
+    /**
+     * True if a whole message or the final part of one
+     */
+    boolean last = true;
+
+    /**
+     * Constructor
+     * @param data the message
+     */
+    public WebsocketBinaryMsg(byte[] data) {
+        this.data = data;
+    }
+
+    /**
+     * Constructor for part of a message
+     * @param data the part
+     * @param last true if the final part
+     */
+    public WebsocketBinaryMsg(byte[] data, boolean last) {
+        this.data = data;
+        this.part = true;
+        this.last = last;
+    }
+
+    /**
+     * @return the message as a ByteBuffer
+     */
+    public ByteBuffer buffer() {
+        return ByteBuffer.wrap(data);
+    }
+}
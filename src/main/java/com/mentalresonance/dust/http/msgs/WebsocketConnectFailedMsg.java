@@ -0,0 +1,41 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mentalresonance.dust.http.msgs;
+
+import lombok.Getter;
+
+import java.io.Serializable;
+
+/**
+ * The websocket could not be connected, or reconnected, and no more attempts will be made
+ */
+@Getter
+public class WebsocketConnectFailedMsg implements Serializable {
+    /**
+     * Cause of the last failure
+     */
+    Throwable cause;
+
+    /**
+     * Constructor
+     * @param cause of the last failure
+     */
+    public WebsocketConnectFailedMsg(Throwable cause) {
+        this.cause = cause;
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mentalresonance.dust.http.msgs;
+
+import lombok.Getter;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+
+/**
+ * A pong from the websocket
+ */
+@Getter
+public class WebsocketPongMsg implements Serializable {
+    /**
+     * The pong's payload
+     */
+    byte[] payload;
+
+    /**
+     * Constructor
+     * @param payload of the pong
+     */
+    public WebsocketPongMsg(byte[] payload) {
+        this.payload = payload;
+    }
+
+    /**
+     * @return the payload as a ByteBuffer
+     */
+    public ByteBuffer buffer() {
+        return ByteBuffer.wrap(payload);
+    }
+}
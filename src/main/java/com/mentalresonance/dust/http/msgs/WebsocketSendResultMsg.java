@@ -0,0 +1,54 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mentalresonance.dust.http.msgs;
+
+import lombok.Getter;
+
+import java.io.Serializable;
+
+/**
+ * Outcome of a websocket send. Sent for every tagged send, and for untagged sends only if they fail.
+ */
+@Getter
+public class WebsocketSendResultMsg implements Serializable {
+    /**
+     * Tag given with the send - may be null
+     */
+    Serializable tag;
+    /**
+     * Cause of failure - null if sent
+     */
+    Throwable exception;
+
+    /**
+     * Constructor
+     * @param tag of the send
+     * @param exception or null if sent
+     */
+    public WebsocketSendResultMsg(Serializable tag, Throwable exception) {
+        this.tag = tag;
+        this.exception = exception;
+    }
+
+    /**
+     * @return true if sent
+     */
+    public boolean isOk() {
+        return null == exception;
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mentalresonance.dust.http.msgs;
+
+import lombok.Getter;
+
+import java.io.Serializable;
+
+/**
+ * A text message from the websocket - or part of one if the handler wants partial messages
+ */
+@Getter
+public class WebsocketTextMsg implements Serializable {
+    /**
+     * The message
+     */
+    String text;
+    /**
+     * True if only part of a message
+     */
+    boolean part = false;
+    /**
+     * True if a whole message or the final part of one
+     */
+    boolean last = true;
+
+    /**
+     * Constructor
+     * @param text the message
+     */
+    public WebsocketTextMsg(String text) {
+        this.text = text;
+    }
+
+    /**
+     * Constructor for part of a message
+     * @param text the part
+     * @param last true if the final part
+     */
+    public WebsocketTextMsg(String text, boolean last) {
+        this.text = text;
+        this.part = true;
+        this.last = last;
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mentalresonance.dust.http.service;
+
+import com.mentalresonance.dust.core.actors.ActorRef;
+import com.mentalresonance.dust.http.msgs.RequestBodyDemandMsg;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request body fed in chunks by an Actor. Once the request starts sending, the feeder is sent
+ * {@link RequestBodyDemandMsg}s and may {@link #offer(byte[])} that many chunks - at most window chunks are ever
+ * buffered. The feeder ends the body with {@link #complete()} (or {@link #fail(IOException)}).
+ * <p>
+ * The body is one shot so requests carrying it are never retried or hedged. Sent with chunked transfer
+ * encoding unless a length is given.
+ * </p>
+ */
+public class ActorRequestBody extends RequestBody {
+
+    static final byte[] END = new byte[0];
+
+    final ActorRef feeder;
+    final MediaType contentType;
+    final long contentLength;
+    final int window;
+    final long idleTimeoutMs;
+    final BlockingQueue<byte[]> chunks;
+    volatile IOException failure = null;
+
+    /**
+     * Constructor - unknown length, 60 second idle timeout
+     * @param feeder Actor supplying chunks
+     * @param contentType of body
+     * @param window maximum chunks buffered
+     */
+    public ActorRequestBody(ActorRef feeder, @Nullable MediaType contentType, int window) {
+        this(feeder, contentType, -1L, window, 60_000L);
+    }
+
+    /**
+     * Constructor
+     * @param feeder Actor supplying chunks
+     * @param contentType of body
+     * @param contentLength total bytes the feeder will supply or -1 if not known
+     * @param window maximum chunks buffered
+     * @param idleTimeoutMs fail the request if the feeder supplies nothing for this long
+     */
+    public ActorRequestBody(ActorRef feeder, @Nullable MediaType contentType, long contentLength, int window, long idleTimeoutMs) {
+        this.feeder = feeder;
+        this.contentType = contentType;
+        this.contentLength = contentLength;
+        this.window = Math.max(2, window);
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.chunks = new ArrayBlockingQueue<>(this.window + 1);
+    }
+
+    /**
+     * Offer the next chunk. The body owns it from now on.
+     * @param chunk of data
+     * @return false if more chunks were offered than demanded - the chunk is not taken
+     */
+    public boolean offer(byte[] chunk) {
+        return chunk.length == 0 || chunks.offer(chunk);
+    }
+
+    /**
+     * The body is complete
+     */
+    public void complete() {
+        chunks.offer(END);
+    }
+
+    /**
+     * The body cannot be completed - the request fails
+     * @param e cause
+     */
+    public void fail(IOException e) {
+        failure = e;
+        chunks.offer(END);
+    }
+
+    @Override
+    public MediaType contentType() {
+        return contentType;
+    }
+
+    @Override
+    public long contentLength() {
+        return contentLength;
+    }
+
+    @Override
+    public boolean isOneShot() {
+        return true;
+    }
+
+    /*
+     * Runs on the OkHttp thread sending the request. Demand is topped up in half windows so the feeder
+     * gets one message per window/2 chunks.
+     */
+    @Override
+    public void writeTo(@NotNull BufferedSink sink) throws IOException {
+        int half = window / 2;
+        int consumed = 0;
+
+        feeder.tell(new RequestBodyDemandMsg(this, window), null);
+        try {
+            while (true) {
+                byte[] chunk = chunks.poll(idleTimeoutMs, TimeUnit.MILLISECONDS);
+
+                if (null == chunk) {
+                    throw new IOException("Timed out waiting for request body from " + feeder);
+                }
+                if (END == chunk) {
+                    break;
+                }
+                sink.write(chunk);
+                if (++consumed == half) {
+                    consumed = 0;
+                    sink.flush();
+                    feeder.tell(new RequestBodyDemandMsg(this, half), null);
+                }
+            }
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("Interrupted waiting for request body");
+        }
+        if (null != failure) {
+            throw failure;
+        }
+    }
+}
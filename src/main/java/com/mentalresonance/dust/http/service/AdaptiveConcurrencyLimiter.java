@@ -0,0 +1,383 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mentalresonance.dust.http.service;
+
+import lombok.Getter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Per host adaptive limit on the number of requests in flight, in the style of Netflix's concurrency-limits.
+ * Each completed request is a sample of latency and whether the host was overloaded (an IOException or a 429/5xx
+ * response) and the host's limit grows or shrinks accordingly:
+ * <ul>
+ *     <li>AIMD - add one while the limit is being used and nothing is dropped, multiply by backoffRatio on a
+ *     drop or a latency above latencyThresholdMs</li>
+ *     <li>GRADIENT - scale the limit by the ratio of long term to current latency (so it shrinks as queues build
+ *     at the host) plus a headroom of sqrt(limit)</li>
+ * </ul>
+ * Requests over the limit wait (without holding a thread) in a bounded per host queue. Set on a profile with
+ * {@link HttpServiceConfig#adaptiveLimiter(AdaptiveConcurrencyLimiter)} - the dispatcher's maxRequestsPerHost
+ * should then be at least maxLimit.
+ * <p>
+ * A host with nothing in flight or queued for idleEvictMs is forgotten, so a crawl over many hosts does not
+ * accumulate them - it starts again from initialLimit if seen again.
+ * </p>
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    /**
+     * Limit algorithms
+     */
+    public enum Algorithm {
+        /**
+         * Additive increase, multiplicative decrease
+         */
+        AIMD,
+        /**
+         * Latency gradient
+         */
+        GRADIENT
+    }
+
+    @Getter
+    Algorithm algorithm = Algorithm.AIMD;
+    @Getter
+    int initialLimit = 10;
+    @Getter
+    int minLimit = 1;
+    @Getter
+    int maxLimit = 200;
+    @Getter
+    double backoffRatio = 0.9;
+    @Getter
+    long latencyThresholdMs = 5000L;
+    @Getter
+    double smoothing = 0.2;
+    @Getter
+    int maxQueued = 1000;
+    @Getter
+    long idleEvictMs = 60_000L;
+
+    final Map<String, HostLimit> hosts = new ConcurrentHashMap<>();
+    final AtomicLong nextSweep = new AtomicLong(System.nanoTime());
+
+    /**
+     * Constructor
+     */
+    public AdaptiveConcurrencyLimiter() {}
+
+    /**
+     * @param algorithm AIMD (default) or GRADIENT
+     * @return this
+     */
+    public AdaptiveConcurrencyLimiter algorithm(Algorithm algorithm) {
+        this.algorithm = algorithm;
+        return this;
+    }
+
+    /**
+     * @param initialLimit limit of a newly seen host
+     * @return this
+     */
+    public AdaptiveConcurrencyLimiter initialLimit(int initialLimit) {
+        this.initialLimit = initialLimit;
+        return this;
+    }
+
+    /**
+     * @param minLimit lower bound of a limit
+     * @return this
+     */
+    public AdaptiveConcurrencyLimiter minLimit(int minLimit) {
+        this.minLimit = minLimit;
+        return this;
+    }
+
+    /**
+     * @param maxLimit upper bound of a limit
+     * @return this
+     */
+    public AdaptiveConcurrencyLimiter maxLimit(int maxLimit) {
+        this.maxLimit = maxLimit;
+        return this;
+    }
+
+    /**
+     * @param backoffRatio (AIMD) multiplier applied on a drop
+     * @return this
+     */
+    public AdaptiveConcurrencyLimiter backoffRatio(double backoffRatio) {
+        this.backoffRatio = backoffRatio;
+        return this;
+    }
+
+    /**
+     * @param latencyThresholdMs (AIMD) latency above which a request counts as a drop
+     * @return this
+     */
+    public AdaptiveConcurrencyLimiter latencyThresholdMs(long latencyThresholdMs) {
+        this.latencyThresholdMs = latencyThresholdMs;
+        return this;
+    }
+
+    /**
+     * @param smoothing (GRADIENT) weight given to each new limit estimate, 0 - 1
+     * @return this
+     */
+    public AdaptiveConcurrencyLimiter smoothing(double smoothing) {
+        this.smoothing = smoothing;
+        return this;
+    }
+
+    /**
+     * @param maxQueued requests which may wait for each host. Beyond this requests are rejected.
+     * @return this
+     */
+    public AdaptiveConcurrencyLimiter maxQueued(int maxQueued) {
+        this.maxQueued = maxQueued;
+        return this;
+    }
+
+    /**
+     * @param idleEvictMs how long a host with nothing in flight is remembered
+     * @return this
+     */
+    public AdaptiveConcurrencyLimiter idleEvictMs(long idleEvictMs) {
+        this.idleEvictMs = idleEvictMs;
+        return this;
+    }
+
+    /**
+     * Current limit for host
+     * @param host the host
+     * @return its limit - initialLimit if the host has not been seen
+     */
+    public int getLimit(String host) {
+        HostLimit limit = hosts.get(host);
+        return null != limit ? limit.currentLimit() : initialLimit;
+    }
+
+    /**
+     * Current limits of all hosts seen
+     * @return map of host to limit
+     */
+    public Map<String, Integer> getLimits() {
+        Map<String, Integer> limits = new LinkedHashMap<>();
+        hosts.forEach((host, limit) -> limits.put(host, limit.currentLimit()));
+        return limits;
+    }
+
+    /**
+     * Requests in flight to host
+     * @param host the host
+     * @return in flight count
+     */
+    public int getInFlight(String host) {
+        HostLimit limit = hosts.get(host);
+        return null != limit ? limit.inFlight() : 0;
+    }
+
+    /**
+     * Does the response status show the host to be overloaded
+     * @param code http status
+     * @return true if overloaded
+     */
+    public static boolean overloaded(int code) {
+        return 429 == code || code >= 500;
+    }
+
+    /**
+     * Start a request when the host's limit allows
+     * @param host of request
+     * @param start run (possibly later, on another thread) when the request may proceed
+     * @param reject called if the host's queue is full
+     */
+    void acquire(String host, Runnable start, Consumer<IOException> reject) {
+        int outcome;
+
+        sweep();
+        do {
+            HostLimit limit = hosts.computeIfAbsent(host, h -> new HostLimit());
+            outcome = limit.acquire(start);
+        } while (HostLimit.RETIRED == outcome);
+
+        if (HostLimit.REJECTED == outcome) {
+            reject.accept(new IOException("Concurrency limit queue full for " + host));
+        }
+        else if (HostLimit.STARTED == outcome) {
+            start.run();
+        }
+    }
+
+    /**
+     * Take a request which has not yet started out of host's queue
+     * @param host of request
+     * @param start as passed to acquire
+     * @return true if it was waiting
+     */
+    boolean withdraw(String host, Runnable start) {
+        HostLimit limit = hosts.get(host);
+        return null != limit && limit.withdraw(start);
+    }
+
+    /**
+     * Record a completed request and start any waiting requests its slot (and a changed limit) allows
+     * @param host of request
+     * @param rttNanos latency of request
+     * @param dropped true if the request failed or the host was overloaded
+     */
+    void release(String host, long rttNanos, boolean dropped) {
+        HostLimit limit = hosts.get(host);
+
+        if (null != limit) {
+            limit.release(rttNanos, dropped).forEach(Runnable::run);
+        }
+    }
+
+    /**
+     * Give up the slot of a cancelled request without recording a sample
+     * @param host of request
+     */
+    void cancelled(String host) {
+        HostLimit limit = hosts.get(host);
+
+        if (null != limit) {
+            limit.cancelled().forEach(Runnable::run);
+        }
+    }
+
+    /*
+     * At most every idleEvictMs forget hosts idle for that long. An evicted HostLimit is retired so a request
+     * which found it just before removal goes round again rather than use it.
+     */
+    void sweep() {
+        long now = System.nanoTime();
+        long sweep = nextSweep.get();
+
+        if (now - sweep >= 0 && nextSweep.compareAndSet(sweep, now + idleEvictMs * 1_000_000L)) {
+            hosts.entrySet().removeIf(entry -> entry.getValue().retire(now - idleEvictMs * 1_000_000L));
+        }
+    }
+
+    class HostLimit {
+        static final int STARTED = 0, QUEUED = 1, REJECTED = 2, RETIRED = 3;
+
+        double limit = initialLimit;
+        double longRttNanos = 0.0;
+        int inFlight = 0;
+        long lastUsed = System.nanoTime();
+        boolean retired = false;
+        final ArrayDeque<Runnable> pending = new ArrayDeque<>();
+
+        synchronized boolean retire(long idleSince) {
+            if (0 == inFlight && pending.isEmpty() && lastUsed - idleSince < 0) {
+                retired = true;
+            }
+            return retired;
+        }
+
+        synchronized int currentLimit() {
+            return (int)limit;
+        }
+
+        synchronized int inFlight() {
+            return inFlight;
+        }
+
+        synchronized int acquire(Runnable start) {
+            if (retired) {
+                return RETIRED;
+            }
+            lastUsed = System.nanoTime();
+            if (inFlight < (int)limit) {
+                ++inFlight;
+                return STARTED;
+            }
+            else if (pending.size() < maxQueued) {
+                pending.add(start);
+                return QUEUED;
+            }
+            return REJECTED;
+        }
+
+        synchronized boolean withdraw(Runnable start) {
+            return pending.remove(start);
+        }
+
+        synchronized List<Runnable> release(long rttNanos, boolean dropped) {
+            update(rttNanos, dropped);
+            return cancelled();
+        }
+
+        synchronized List<Runnable> cancelled() {
+            List<Runnable> toStart = new LinkedList<>();
+
+            lastUsed = System.nanoTime();
+            --inFlight;
+            while (inFlight < (int)limit && ! pending.isEmpty()) {
+                ++inFlight;
+                toStart.add(pending.poll());
+            }
+            return toStart;
+        }
+
+        void update(long rttNanos, boolean dropped) {
+            switch (algorithm) {
+                case AIMD -> {
+                    if (dropped || rttNanos > latencyThresholdMs * 1_000_000L) {
+                        limit = limit * backoffRatio;
+                    }
+                    else if (inFlight * 2 >= (int)limit) {
+                        limit = limit + 1.0;
+                    }
+                }
+                case GRADIENT -> {
+                    if (dropped) {
+                        limit = limit * backoffRatio;
+                    } else {
+                        longRttNanos = longRttNanos == 0.0 ? rttNanos : longRttNanos * 0.95 + rttNanos * 0.05;
+                        /*
+                         * Let the long term estimate recover quickly once a burst of latency has passed
+                         */
+                        if (longRttNanos > 2.0 * rttNanos) {
+                            longRttNanos = longRttNanos * 0.9;
+                        }
+                        double gradient = Math.max(0.5, Math.min(1.0, longRttNanos / Math.max(1L, rttNanos)));
+                        double estimate = limit * gradient + Math.sqrt(limit);
+                        /*
+                         * Only grow while the limit is actually being used
+                         */
+                        if (estimate < limit || inFlight * 2 >= (int)limit) {
+                            limit = limit * (1.0 - smoothing) + estimate * smoothing;
+                        }
+                    }
+                }
+            }
+            limit = Math.max(minLimit, Math.min(maxLimit, limit));
+        }
+    }
+}
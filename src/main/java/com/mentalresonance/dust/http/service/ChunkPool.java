@@ -0,0 +1,55 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mentalresonance.dust.http.service;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded pool of equal sized byte[] chunk buffers for streamed response bodies. Buffers not released (or
+ * released when the pool is full) are simply left to the garbage collector.
+ */
+class ChunkPool {
+
+    final int chunkBytes;
+    final int maxPooled;
+    final ConcurrentLinkedQueue<byte[]> free = new ConcurrentLinkedQueue<>();
+    final AtomicInteger pooled = new AtomicInteger();
+
+    ChunkPool(int chunkBytes, int maxPooled) {
+        this.chunkBytes = chunkBytes;
+        this.maxPooled = maxPooled;
+    }
+
+    byte[] acquire() {
+        byte[] chunk = free.poll();
+
+        if (null != chunk) {
+            pooled.decrementAndGet();
+            return chunk;
+        }
+        return new byte[chunkBytes];
+    }
+
+    void release(byte[] chunk) {
+        if (chunk.length == chunkBytes && pooled.incrementAndGet() <= maxPooled) {
+            free.offer(chunk);
+        } else
+            pooled.decrementAndGet();
+    }
+}
@@ -0,0 +1,295 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mentalresonance.dust.http.service;
+
+import com.mentalresonance.dust.core.actors.ActorRef;
+import com.mentalresonance.dust.http.msgs.CircuitBreakerStateMsg;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per host circuit breaker for the async and server sent request paths. After failureThreshold consecutive failures
+ * (IOExceptions or 5xx responses) the circuit to the host opens and requests fail immediately with a
+ * {@link CircuitBreakerOpenException} rather than waiting on a dead upstream. After openMs the circuit is half open
+ * and up to halfOpenCalls trial requests are let through - a success closes the circuit, a failure reopens it. Only
+ * the outcomes of those trials move a half open circuit - requests admitted before it opened are ignored.
+ * <p>
+ * Every state change is sent as a {@link CircuitBreakerStateMsg} to the subscribed Actors.
+ * Set on a profile with {@link HttpServiceConfig#circuitBreaker(CircuitBreaker)}.
+ * </p>
+ * <p>
+ * A closed circuit to a host with no requests for idleEvictMs is forgotten, so requests to many hosts do not
+ * accumulate them.
+ * </p>
+ */
+@Slf4j
+@Getter
+public class CircuitBreaker {
+
+    /**
+     * Circuit states
+     */
+    public enum State {
+        /**
+         * Requests flow
+         */
+        CLOSED,
+        /**
+         * Requests fail fast
+         */
+        OPEN,
+        /**
+         * Trial requests flow
+         */
+        HALF_OPEN
+    }
+
+    /**
+     * Returned by allow when the request may not proceed
+     */
+    public static final long REFUSED = -1L;
+
+    int failureThreshold = 5;
+    long openMs = 30_000L;
+    int halfOpenCalls = 1;
+    long idleEvictMs = 60_000L;
+
+    @Getter(AccessLevel.NONE)
+    final Map<String, Circuit> circuits = new ConcurrentHashMap<>();
+    @Getter(AccessLevel.NONE)
+    final AtomicLong nextSweep = new AtomicLong(System.nanoTime());
+    @Getter(AccessLevel.NONE)
+    final List<ActorRef> subscribers = new CopyOnWriteArrayList<>();
+
+    /**
+     * Constructor
+     */
+    public CircuitBreaker() {}
+
+    /**
+     * @param failureThreshold consecutive failures which open the circuit
+     * @return this
+     */
+    public CircuitBreaker failureThreshold(int failureThreshold) {
+        this.failureThreshold = failureThreshold;
+        return this;
+    }
+
+    /**
+     * @param openMs time the circuit stays open before trial requests are allowed
+     * @return this
+     */
+    public CircuitBreaker openMs(long openMs) {
+        this.openMs = openMs;
+        return this;
+    }
+
+    /**
+     * @param halfOpenCalls concurrent trial requests allowed when half open
+     * @return this
+     */
+    public CircuitBreaker halfOpenCalls(int halfOpenCalls) {
+        this.halfOpenCalls = halfOpenCalls;
+        return this;
+    }
+
+    /**
+     * @param idleEvictMs how long a closed circuit to a host with no requests is remembered
+     * @return this
+     */
+    public CircuitBreaker idleEvictMs(long idleEvictMs) {
+        this.idleEvictMs = idleEvictMs;
+        return this;
+    }
+
+    /**
+     * Have state changes sent to an Actor
+     * @param subscriber the Actor
+     */
+    public void subscribe(ActorRef subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    /**
+     * Stop sending state changes to an Actor
+     * @param subscriber the Actor
+     */
+    public void unsubscribe(ActorRef subscriber) {
+        subscribers.remove(subscriber);
+    }
+
+    /**
+     * State of the circuit to a host
+     * @param host the host
+     * @return its state
+     */
+    public State getState(String host) {
+        Circuit circuit = circuits.get(host);
+        return null != circuit ? circuit.state() : State.CLOSED;
+    }
+
+    /**
+     * Does the response status count as a failure
+     * @param code http status
+     * @return true for 5xx
+     */
+    public static boolean failed(int code) {
+        return code >= 500;
+    }
+
+    /**
+     * May a request to host be made. If so the caller must report the outcome, with the returned admission, through
+     * {@link #success}, {@link #failure} or {@link #cancelled}.
+     * @param host of request
+     * @return the admission - {@link #REFUSED} if the request may not proceed
+     */
+    long allow(String host) {
+        sweep();
+        return circuits.computeIfAbsent(host, Circuit::new).allow();
+    }
+
+    /*
+     * At most every idleEvictMs forget closed circuits idle for that long. Outcomes are looked up by host so one
+     * for a request admitted by a removed circuit goes to its replacement, if any - where, being closed, its
+     * admission does not matter.
+     */
+    void sweep() {
+        long now = System.nanoTime();
+        long sweep = nextSweep.get();
+
+        if (now - sweep >= 0 && nextSweep.compareAndSet(sweep, now + idleEvictMs * 1_000_000L)) {
+            long idleSince = now - idleEvictMs * 1_000_000L;
+            circuits.values().removeIf(c -> c.idleSince(idleSince));
+        }
+    }
+
+    void success(String host, long admission) {
+        Circuit circuit = circuits.get(host);
+        if (null != circuit) {
+            circuit.outcome(admission, true);
+        }
+    }
+
+    void failure(String host, long admission) {
+        Circuit circuit = circuits.get(host);
+        if (null != circuit) {
+            circuit.outcome(admission, false);
+        }
+    }
+
+    void cancelled(String host, long admission) {
+        Circuit circuit = circuits.get(host);
+        if (null != circuit) {
+            circuit.cancelled(admission);
+        }
+    }
+
+    /*
+     * Telling is non-blocking so it is fine to publish while holding the circuit's lock
+     */
+    void publish(String host, State from, State to) {
+        log.info("Circuit for {} {} -> {}", host, from, to);
+        CircuitBreakerStateMsg msg = new CircuitBreakerStateMsg(host, from, to);
+        subscribers.forEach(s -> s.tell(msg, null));
+    }
+
+    /*
+     * Each half open period has a new generation, which is the admission of its trials. Requests admitted while
+     * closed have admission 0.
+     */
+    class Circuit {
+        final String host;
+        State state = State.CLOSED;
+        int failures = 0;
+        int trials = 0;
+        long generation = 0L;
+        long openedAt = 0L;
+        long lastUsed = System.nanoTime();
+
+        Circuit(String host) {
+            this.host = host;
+        }
+
+        synchronized State state() {
+            return state;
+        }
+
+        synchronized boolean idleSince(long since) {
+            return State.CLOSED == state && lastUsed - since < 0;
+        }
+
+        synchronized long allow() {
+            lastUsed = System.nanoTime();
+            if (State.OPEN == state && System.currentTimeMillis() - openedAt >= openMs) {
+                trials = 0;
+                ++generation;
+                transition(State.HALF_OPEN);
+            }
+            return switch (state) {
+                case CLOSED -> 0L;
+                case HALF_OPEN -> {
+                    if (trials < halfOpenCalls) {
+                        ++trials;
+                        yield generation;
+                    }
+                    yield REFUSED;
+                }
+                case OPEN -> REFUSED;
+            };
+        }
+
+        synchronized void outcome(long admission, boolean ok) {
+            lastUsed = System.nanoTime();
+            if (State.HALF_OPEN == state) {
+                if (admission == generation) {
+                    --trials;
+                    failures = 0;
+                    transition(ok ? State.CLOSED : State.OPEN);
+                }
+            }
+            else if (ok) {
+                failures = 0;
+            }
+            else if (++failures >= failureThreshold && State.CLOSED == state) {
+                transition(State.OPEN);
+            }
+        }
+
+        synchronized void cancelled(long admission) {
+            if (State.HALF_OPEN == state && admission == generation) {
+                --trials;
+            }
+        }
+
+        void transition(State to) {
+            State from = state;
+            state = to;
+            if (State.OPEN == to) {
+                openedAt = System.currentTimeMillis();
+            }
+            publish(host, from, to);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mentalresonance.dust.http.service;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import okio.BufferedSink;
+import okio.BufferedSource;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * {@link JsonCodec} on a single (thread safe) Gson instance, streaming through Gson's JsonWriter / JsonReader
+ * with no intermediate String.
+ */
+public class GsonJsonCodec implements JsonCodec {
+
+    final Gson gson;
+
+    /**
+     * Constructor - default Gson
+     */
+    public GsonJsonCodec() {
+        this(new Gson());
+    }
+
+    /**
+     * Constructor
+     * @param gson configured Gson to use
+     */
+    public GsonJsonCodec(Gson gson) {
+        this.gson = gson;
+    }
+
+    @Override
+    public void encode(Object value, BufferedSink sink) throws IOException {
+        JsonWriter writer = gson.newJsonWriter(new OutputStreamWriter(sink.outputStream(), StandardCharsets.UTF_8));
+        try {
+            gson.toJson(value, null != value ? value.getClass() : Object.class, writer);
+        } catch (JsonParseException e) {
+            throw new IOException(e);
+        }
+        writer.flush();
+    }
+
+    @Override
+    public <T> T decode(BufferedSource source, Type type) throws IOException {
+        JsonReader reader = gson.newJsonReader(new InputStreamReader(source.inputStream(), StandardCharsets.UTF_8));
+        try {
+            return gson.fromJson(reader, type);
+        } catch (JsonParseException e) {
+            throw new IOException(e);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mentalresonance.dust.http.service;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import okhttp3.Request;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hedged requests. If an idempotent request has not completed after the hedge delay a second copy is sent and
+ * whichever response arrives first is used, the other call being cancelled. The delay is the given percentile
+ * (default p95) of recent latencies to the host, or fixedDelayMs until enough latencies have been seen.
+ * <p>
+ * Set on a profile with {@link HttpServiceConfig#hedgePolicy(HedgePolicy)} or on one request by tagging it:
+ * {@code request.newBuilder().tag(HedgePolicy.class, policy).build()}.
+ * </p>
+ * <p>
+ * Latencies to a host not seen for idleEvictMs are forgotten, so hedging across many hosts does not accumulate
+ * them - the host starts again from fixedDelayMs if seen again.
+ * </p>
+ */
+@Getter
+public class HedgePolicy {
+
+    double percentile = 0.95;
+    long fixedDelayMs = 1000L;
+    long minDelayMs = 5L;
+    int maxHedges = 1;
+    int minSamples = 20;
+    int window = 256;
+    long idleEvictMs = 60_000L;
+
+    @Getter(AccessLevel.NONE)
+    final Map<String, Latencies> latencies = new ConcurrentHashMap<>();
+    @Getter(AccessLevel.NONE)
+    final AtomicLong nextSweep = new AtomicLong(System.nanoTime());
+
+    /**
+     * Constructor
+     */
+    public HedgePolicy() {}
+
+    /**
+     * @param percentile of host latency after which to hedge, 0 - 1
+     * @return this
+     */
+    public HedgePolicy percentile(double percentile) {
+        this.percentile = percentile;
+        return this;
+    }
+
+    /**
+     * @param fixedDelayMs delay used until minSamples latencies to a host have been seen
+     * @return this
+     */
+    public HedgePolicy fixedDelayMs(long fixedDelayMs) {
+        this.fixedDelayMs = fixedDelayMs;
+        return this;
+    }
+
+    /**
+     * @param minDelayMs lower bound on the hedge delay
+     * @return this
+     */
+    public HedgePolicy minDelayMs(long minDelayMs) {
+        this.minDelayMs = minDelayMs;
+        return this;
+    }
+
+    /**
+     * @param maxHedges extra copies which may be sent
+     * @return this
+     */
+    public HedgePolicy maxHedges(int maxHedges) {
+        this.maxHedges = maxHedges;
+        return this;
+    }
+
+    /**
+     * @param minSamples latencies needed before the percentile is used
+     * @return this
+     */
+    public HedgePolicy minSamples(int minSamples) {
+        this.minSamples = minSamples;
+        return this;
+    }
+
+    /**
+     * @param window number of recent latencies kept per host
+     * @return this
+     */
+    public HedgePolicy window(int window) {
+        this.window = window;
+        return this;
+    }
+
+    /**
+     * @param idleEvictMs how long latencies to a host with no requests are remembered
+     * @return this
+     */
+    public HedgePolicy idleEvictMs(long idleEvictMs) {
+        this.idleEvictMs = idleEvictMs;
+        return this;
+    }
+
+    /**
+     * Only idempotent requests whose body can be resent are hedged
+     * @param request the request
+     * @return true if it may be hedged
+     */
+    public boolean hedges(Request request) {
+        return (null == request.body() || ! request.body().isOneShot()) && switch (request.method()) {
+            case HttpService.GET, HttpService.HEAD, HttpService.PUT, HttpService.DELETE -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * Current hedge delay for host
+     * @param host the host
+     * @return delay in ms
+     */
+    public long delayMs(String host) {
+        Latencies l = latencies.get(host);
+        return Math.max(minDelayMs, null != l ? l.percentileMs() : fixedDelayMs);
+    }
+
+    /**
+     * Record a latency to host
+     * @param host the host
+     * @param nanos the latency
+     */
+    void record(String host, long nanos) {
+        sweep();
+        latencies.computeIfAbsent(host, h -> new Latencies()).add(nanos);
+    }
+
+    /*
+     * At most every idleEvictMs forget hosts with no latency recorded for that long. A sample added to Latencies
+     * just as they are removed is lost, which does no harm.
+     */
+    void sweep() {
+        long now = System.nanoTime();
+        long sweep = nextSweep.get();
+
+        if (now - sweep >= 0 && nextSweep.compareAndSet(sweep, now + idleEvictMs * 1_000_000L)) {
+            long idleSince = now - idleEvictMs * 1_000_000L;
+            latencies.values().removeIf(l -> l.idleSince(idleSince));
+        }
+    }
+
+    /*
+     * Ring of recent latencies. The percentile is recomputed every few samples rather than on every request.
+     */
+    class Latencies {
+        final long[] ring = new long[window];
+        int next = 0;
+        int filled = 0;
+        int sinceUpdate = 0;
+        boolean seenMin = false;
+        long cachedMs = fixedDelayMs;
+        long lastUsed = System.nanoTime();
+
+        synchronized void add(long nanos) {
+            lastUsed = System.nanoTime();
+            ring[next] = nanos;
+            next = (next + 1) % ring.length;
+            filled = Math.min(filled + 1, ring.length);
+            seenMin = seenMin || filled >= minSamples || filled == ring.length;
+
+            if (++sinceUpdate >= 16 && seenMin) {
+                sinceUpdate = 0;
+                long[] sorted = Arrays.copyOf(ring, filled);
+                Arrays.sort(sorted);
+                cachedMs = sorted[(int)Math.min(sorted.length - 1, Math.floor(percentile * sorted.length))] / 1_000_000L;
+            }
+        }
+
+        synchronized long percentileMs() {
+            return cachedMs;
+        }
+
+        synchronized boolean idleSince(long since) {
+            return lastUsed - since < 0;
+        }
+    }
+}
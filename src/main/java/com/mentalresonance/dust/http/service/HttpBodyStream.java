@@ -0,0 +1,178 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mentalresonance.dust.http.service;
+
+import com.mentalresonance.dust.core.actors.ActorRef;
+import com.mentalresonance.dust.http.msgs.HttpBodyChunkMsg;
+import com.mentalresonance.dust.http.msgs.HttpBodyEndMsg;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.Call;
+import okhttp3.Response;
+import okio.BufferedSource;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Handle on a response body being streamed to an Actor as {@link HttpBodyChunkMsg}s. Reading is credit based -
+ * the body is only pulled from the connection while the receiver has outstanding credit, one credit per chunk.
+ * The receiver grants more with {@link #request(long)} as it processes chunks and should {@link HttpBodyChunkMsg#release()}
+ * each chunk once done with it so its buffer can be reused.
+ * <p>
+ * Reads are blocking so happen on the HttpService's body reader threads, never on an Actor's.
+ * </p>
+ */
+@Slf4j
+public class HttpBodyStream {
+
+    final Call call;
+    final Response response;
+    final BufferedSource source;
+    final ActorRef receiver;
+    final ChunkPool pool;
+    /**
+     * Tag of the request
+     */
+    @Getter
+    final Serializable tag;
+
+    final AtomicLong credit = new AtomicLong();
+    final AtomicBoolean pumping = new AtomicBoolean();
+    volatile boolean done = false;
+    volatile boolean cancelled = false;
+    long offset = 0L;
+
+    HttpBodyStream(Call call, Response response, ActorRef receiver, Serializable tag, ChunkPool pool) {
+        this.call = call;
+        this.response = response;
+        this.source = response.body().source();
+        this.receiver = receiver;
+        this.tag = tag;
+        this.pool = pool;
+    }
+
+    /**
+     * Grant credit for more chunks
+     * @param n number of chunks
+     */
+    public void request(long n) {
+        if (n > 0) {
+            credit.addAndGet(n);
+            pump();
+        }
+    }
+
+    /**
+     * Stop streaming and release the connection. No {@link HttpBodyEndMsg} follows.
+     */
+    public void cancel() {
+        cancelled = true;
+        call.cancel();
+        pump();
+    }
+
+    /**
+     * Return a chunk's buffer to the pool
+     * @param chunk the buffer
+     */
+    public void release(byte[] chunk) {
+        pool.release(chunk);
+    }
+
+    /**
+     * @return bytes streamed so far
+     */
+    public synchronized long getOffset() {
+        return offset;
+    }
+
+    void pump() {
+        if (! done && pumping.compareAndSet(false, true)) {
+            HttpService.bodyReaders.execute(this::read);
+        }
+    }
+
+    /*
+     * Only one read() runs at a time. After giving up the pumping flag we check again in case credit arrived
+     * between our last look and the release.
+     */
+    void read() {
+        do {
+            try {
+                while (! done && ! cancelled && credit.get() > 0) {
+                    byte[] chunk = pool.acquire();
+                    int n = fill(source, chunk);
+
+                    if (0 == n) {
+                        pool.release(chunk);
+                    } else {
+                        long at;
+                        synchronized (this) {
+                            at = offset;
+                            offset += n;
+                        }
+                        credit.decrementAndGet();
+                        receiver.tell(new HttpBodyChunkMsg(this, chunk, n, at), null);
+                    }
+                    if (n < chunk.length) {
+                        finish(null);
+                    }
+                }
+                if (cancelled && ! done) {
+                    finish(null);
+                }
+            } catch (IOException e) {
+                finish(e);
+            } finally {
+                pumping.set(false);
+            }
+        } while (! done && (cancelled || credit.get() > 0) && pumping.compareAndSet(false, true));
+    }
+
+    /*
+     * A read returns at most one buffered segment, so read until the chunk is full or the body ends
+     * @return bytes read - less than the chunk only at the end of the body
+     */
+    static int fill(BufferedSource source, byte[] chunk) throws IOException {
+        int n = 0;
+
+        while (n < chunk.length) {
+            int read = source.read(chunk, n, chunk.length - n);
+            if (-1 == read) {
+                break;
+            }
+            n += read;
+        }
+        return n;
+    }
+
+    void finish(IOException e) {
+        done = true;
+        response.close();
+
+        if (! cancelled) {
+            if (null != e) {
+                log.warn("Body of {} failed: {}", response.request().url(), e.getMessage());
+            }
+            receiver.tell(new HttpBodyEndMsg(getOffset(), e, tag), null);
+        }
+    }
+}
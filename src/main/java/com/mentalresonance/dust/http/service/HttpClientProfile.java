@@ -0,0 +1,97 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mentalresonance.dust.http.service;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.OkHttpClient;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A registered {@link HttpService} profile - the config it was built from and the resulting client.
+ */
+@Slf4j
+@Getter
+public class HttpClientProfile {
+
+    /**
+     * Name of the profile
+     */
+    final String name;
+    /**
+     * Config it was built from
+     */
+    final HttpServiceConfig config;
+    /**
+     * The client
+     */
+    final OkHttpClient client;
+    /**
+     * Single-flight of identical requests - null if not enabled
+     */
+    @Getter(AccessLevel.PACKAGE)
+    final RequestCoalescer coalescer;
+    /**
+     * Buffers for streamed response bodies
+     */
+    @Getter(AccessLevel.PACKAGE)
+    final ChunkPool chunkPool;
+    /**
+     * Requests under retry or hedging - so they can be cancelled
+     */
+    @Getter(AccessLevel.PACKAGE)
+    final Set<RetryingCall> retrying = ConcurrentHashMap.newKeySet();
+    /**
+     * Calls waiting for an adaptive limiter slot - so they can be cancelled
+     */
+    @Getter(AccessLevel.PACKAGE)
+    final Set<HttpService.LimitedCall> limited = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Constructor
+     * @param name of profile
+     * @param config of profile
+     */
+    HttpClientProfile(String name, HttpServiceConfig config) {
+        this.name = name;
+        this.config = config;
+        this.client = config.buildClient();
+        this.coalescer = null != config.getCoalesceHeaders() ? new RequestCoalescer(config.getCoalesceHeaders()) : null;
+        this.chunkPool = new ChunkPool(config.getBodyChunkBytes(), config.getBodyChunkPoolSize());
+    }
+
+    /**
+     * Release the client's threads, connections and cache
+     */
+    void shutdown() {
+        client.dispatcher().executorService().shutdown();
+        client.connectionPool().evictAll();
+
+        if (client.cache() != null) {
+            try {
+                client.cache().close();
+            } catch (IOException e) {
+                log.warn("Closing cache of {}: {}", name, e.getMessage());
+            }
+        }
+    }
+}
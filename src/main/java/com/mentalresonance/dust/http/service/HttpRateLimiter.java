@@ -0,0 +1,150 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mentalresonance.dust.http.service;
+
+import okhttp3.Request;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Rate limits for requests made by {@link com.mentalresonance.dust.http.trait.HttpClientActor}s. A limiter is a set
+ * of {@link TokenBucket}s - one global and/or one per key (host, route or any function of the Request).
+ * A request must wait for a permit from every bucket it maps to.
+ * <pre>
+ *     static final HttpRateLimiter limiter = new HttpRateLimiter()
+ *         .global(100, 20)
+ *         .perHost(10, 5);
+ * </pre>
+ * The limiter is shared (and thread safe) so it is usually held in a static and returned from
+ * {@link com.mentalresonance.dust.http.trait.HttpClientActor#rateLimiter()} of all the Actors it governs.
+ * Buckets which have refilled are swept away every few seconds, so keys seen once do not accumulate.
+ */
+public class HttpRateLimiter {
+
+    final List<Limit> limits = new ArrayList<>();
+
+    /**
+     * Constructor
+     */
+    public HttpRateLimiter() {}
+
+    /**
+     * Limit all requests
+     * @param permitsPerSecond sustained rate
+     * @param burst maximum burst
+     * @return this
+     */
+    public HttpRateLimiter global(double permitsPerSecond, int burst) {
+        return perKey(permitsPerSecond, burst, request -> "");
+    }
+
+    /**
+     * Limit requests to each host
+     * @param permitsPerSecond sustained rate
+     * @param burst maximum burst
+     * @return this
+     */
+    public HttpRateLimiter perHost(double permitsPerSecond, int burst) {
+        return perKey(permitsPerSecond, burst, request -> request.url().host());
+    }
+
+    /**
+     * Limit requests to each route - the method, host and path of the url
+     * @param permitsPerSecond sustained rate
+     * @param burst maximum burst
+     * @return this
+     */
+    public HttpRateLimiter perRoute(double permitsPerSecond, int burst) {
+        return perKey(permitsPerSecond, burst,
+                request -> request.method() + " " + request.url().host() + request.url().encodedPath());
+    }
+
+    /**
+     * Limit requests with the same key
+     * @param permitsPerSecond sustained rate
+     * @param burst maximum burst
+     * @param key maps a request to its bucket
+     * @return this
+     */
+    public HttpRateLimiter perKey(double permitsPerSecond, int burst, Function<Request, String> key) {
+        limits.add(new Limit(permitsPerSecond, burst, key));
+        return this;
+    }
+
+    /**
+     * Reserve permits for the request in all its buckets.
+     * @param request to be made
+     * @return ms to wait before making the request - 0 means make it now
+     */
+    public long reserve(Request request) {
+        long waitNanos = 0L;
+
+        for (Limit limit : limits) {
+            waitNanos = Math.max(waitNanos, limit.bucket(request).reserve());
+        }
+        return (waitNanos + 999_999L) / 1_000_000L;
+    }
+
+    /**
+     * @return buckets currently held across all limits
+     */
+    public int getBucketCount() {
+        return limits.stream().mapToInt(limit -> limit.buckets.size()).sum();
+    }
+
+    static class Limit {
+        static final long SWEEP_NANOS = 10_000_000_000L;
+
+        final double permitsPerSecond;
+        final int burst;
+        final Function<Request, String> key;
+        final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+        final AtomicLong nextSweep = new AtomicLong(System.nanoTime() + SWEEP_NANOS);
+
+        Limit(double permitsPerSecond, int burst, Function<Request, String> key) {
+            this.permitsPerSecond = permitsPerSecond;
+            this.burst = burst;
+            this.key = key;
+        }
+
+        TokenBucket bucket(Request request) {
+            String k = key.apply(request);
+            long now = System.nanoTime();
+            long sweep = nextSweep.get();
+
+            if (now - sweep >= 0 && nextSweep.compareAndSet(sweep, now + SWEEP_NANOS)) {
+                sweep();
+            }
+            TokenBucket bucket = buckets.get(k);
+            return null != bucket ? bucket : buckets.computeIfAbsent(k, x -> new TokenBucket(permitsPerSecond, burst));
+        }
+
+        /*
+         * A full bucket is no different from a new one. One fetched just before removal may grant a single
+         * permit outside the map, which its replacement would have granted anyway.
+         */
+        void sweep() {
+            buckets.entrySet().removeIf(entry -> entry.getValue().isFull());
+        }
+    }
+}
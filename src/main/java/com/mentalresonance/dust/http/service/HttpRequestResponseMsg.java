@@ -19,25 +19,51 @@ package com.mentalresonance.dust.http.service;
 
 import com.mentalresonance.dust.core.actors.ActorRef;
 import com.mentalresonance.dust.core.msgs.ProxyMsg;
+import okhttp3.MediaType;
 import okhttp3.Request;
+import okhttp3.RequestBody;
 import okhttp3.Response;
+import okio.Buffer;
 
 import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serial;
 import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Generic request/response message for use in HttpClientActor.
+ * <p>
+ * The request is serialized as its method, url, headers and (buffered) body - a request with a one-shot body cannot be
+ * serialized and throws a {@link NotSerializableException}. The live response is transient.
+ * Set materialize (or override
+ * {@link com.mentalresonance.dust.http.trait.HttpClientActor#materializeResponses()}) to have the response read into
+ * {@link #data} and closed as soon as it arrives - the message is then fully serializable and holds no connection
+ * while it sits in a mailbox.
+ * </p>
  */
 public class HttpRequestResponseMsg extends ProxyMsg {
 
     /**
      * Request to perform
      */
-    public Request request;
+    public transient Request request;
     /**
-     * Response from that request
+     * Response from that request. null if materialized.
      */
-    public Response response;
+    public transient Response response;
+    /**
+     * The materialized response
+     */
+    public HttpResponseData data = null;
+    /**
+     * If true the response is delivered as {@link #data} rather than as a live {@link #response}
+     */
+    public boolean materialize = false;
     /**
      * Exception if it error'd
      */
@@ -46,6 +72,11 @@ public class HttpRequestResponseMsg extends ProxyMsg {
      * Optional 'companion' message - just returned as is. Usually the message that resulted in the HttpRequest.
      */
     public Serializable tag = null;
+    /**
+     * Optional name of the {@link HttpService} client profile to use. If null the requesting Actor's
+     * profile is used.
+     */
+    public String profile = null;
 
     /**
      * Constructor
@@ -68,12 +99,57 @@ public class HttpRequestResponseMsg extends ProxyMsg {
         this.tag = tag;
     }
 
+    @Serial
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeBoolean(null != request);
+
+        if (null != request) {
+            RequestBody body = request.body();
+            if (null != body && body.isOneShot()) {
+                throw new NotSerializableException("One-shot request body to " + request.url());
+            }
+            out.writeUTF(request.method());
+            out.writeUTF(request.url().toString());
+            out.writeObject(new LinkedHashMap<>(request.headers().toMultimap()));
+            if (null != body) {
+                Buffer buffer = new Buffer();
+                body.writeTo(buffer);
+                MediaType type = body.contentType();
+                out.writeObject(null != type ? type.toString() : null);
+                out.writeObject(buffer.readByteArray());
+            } else {
+                out.writeObject(null);
+                out.writeObject(null);
+            }
+        }
+    }
+
+    @Serial
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+
+        if (in.readBoolean()) {
+            String method = in.readUTF();
+            String url = in.readUTF();
+            Map<String, List<String>> headers = (Map<String, List<String>>) in.readObject();
+            String type = (String) in.readObject();
+            byte[] bytes = (byte[]) in.readObject();
+            Request.Builder builder = new Request.Builder().url(url);
+
+            headers.forEach((name, values) -> values.forEach(value -> builder.addHeader(name, value)));
+            builder.method(method, null != bytes ? RequestBody.create(bytes, null != type ? MediaType.parse(type) : null) : null);
+            request = builder.build();
+        }
+    }
+
     /**
      * The default key is the host of the request
-     * @return host part of request url
+     * @return host part of request url or null if the request did not survive serialization
      */
     @Override
     public String key() {
-        return request.url().host();
+        return null != request ? request.url().host() : null;
     }
 }
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mentalresonance.dust.http.service;
+
+import lombok.Getter;
+import okhttp3.MediaType;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+import java.io.IOException;
+import java.io.Serial;
+import java.io.Serializable;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, serializable snapshot of a Response - status, headers and the fully read body. Unlike a live
+ * Response it can cross a remote boundary or be persisted, and since the body has been read and the Response
+ * closed its connection is already back in the pool.
+ */
+@Getter
+public class HttpResponseData implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Status code
+     */
+    final int code;
+    /**
+     * Status message
+     */
+    final String message;
+    /**
+     * Protocol e.g. http/1.1
+     */
+    final String protocol;
+    /**
+     * Url of the request which produced the response (after any redirects)
+     */
+    final String url;
+    /**
+     * Headers in order - names as received
+     */
+    final Map<String, List<String>> headers;
+    /**
+     * Content-Type of body or null
+     */
+    final String contentType;
+    /**
+     * The body - empty if there was none
+     */
+    final byte[] body;
+
+    HttpResponseData(int code, String message, String protocol, String url, Map<String, List<String>> headers,
+                     String contentType, byte[] body) {
+        this.code = code;
+        this.message = message;
+        this.protocol = protocol;
+        this.url = url;
+        this.headers = headers;
+        this.contentType = contentType;
+        this.body = body;
+    }
+
+    /**
+     * Read the Response in its entirety and close it
+     * @param response to read
+     * @return the snapshot
+     * @throws IOException on failure reading the body
+     */
+    public static HttpResponseData of(Response response) throws IOException {
+        try (response) {
+            ResponseBody rb = response.body();
+            MediaType type = null != rb ? rb.contentType() : null;
+            LinkedHashMap<String, List<String>> headers = new LinkedHashMap<>();
+
+            for (String name : response.headers().names()) {
+                headers.put(name, List.copyOf(response.headers(name)));
+            }
+            return new HttpResponseData(
+                response.code(),
+                response.message(),
+                response.protocol().toString(),
+                response.request().url().toString(),
+                Collections.unmodifiableMap(headers),
+                null != type ? type.toString() : null,
+                null != rb ? rb.bytes() : new byte[0]
+            );
+        }
+    }
+
+    /**
+     * @return true if code is 2xx
+     */
+    public boolean isSuccessful() {
+        return code >= 200 && code < 300;
+    }
+
+    /**
+     * First value of a header
+     * @param name of header - case insensitive
+     * @return value or null if not present
+     */
+    public String header(String name) {
+        for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+            if (entry.getKey().equalsIgnoreCase(name) && ! entry.getValue().isEmpty()) {
+                return entry.getValue().get(0);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The body as a String in the charset of its Content-Type, defaulting to UTF-8
+     * @return body
+     */
+    public String bodyString() {
+        MediaType type = null != contentType ? MediaType.parse(contentType) : null;
+        Charset charset = null != type ? type.charset(StandardCharsets.UTF_8) : StandardCharsets.UTF_8;
+        return new String(body, charset);
+    }
+}
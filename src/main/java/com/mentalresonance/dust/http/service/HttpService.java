@@ -17,9 +17,10 @@
 
 package com.mentalresonance.dust.http.service;
 
-import com.google.gson.Gson;
 import com.mentalresonance.dust.core.actors.ActorRef;
 import com.mentalresonance.dust.core.services.SerializationService;
+import com.mentalresonance.dust.http.msgs.HttpBodyEndMsg;
+import com.mentalresonance.dust.http.msgs.HttpBodyStartMsg;
 import com.mentalresonance.dust.http.msgs.StreamingHttpDataMsg;
 import com.mentalresonance.dust.http.msgs.StreamingHttpEndMsg;
 import com.mentalresonance.dust.http.msgs.StreamingHttpFailureMsg;
@@ -29,19 +30,26 @@ import lombok.extern.slf4j.Slf4j;
 import okhttp3.*;
 import okhttp3.sse.EventSource;
 import okhttp3.sse.EventSourceListener;
+import okio.Buffer;
+import okio.BufferedSink;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.Serializable;
-import java.net.CookieManager;
-import java.net.CookiePolicy;
+import java.lang.reflect.Type;
 import java.util.LinkedHashMap;
 import static okhttp3.sse.EventSources.createFactory;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import org.jetbrains.annotations.Nullable;
@@ -79,23 +87,51 @@ public class HttpService {
      */
     static final String defaultUserAgent = "Mozilla/5.0 (X11; Ubuntu; Linux x86_64; rv:91.0) Gecko/20100101 Firefox/91.0";
 
+    /**
+     * Name of the profile used when none is specified
+     */
+    public static final String DEFAULT_PROFILE = "default";
+
+    /**
+     * Registered client profiles by name
+     */
+    static final Map<String, HttpClientProfile> profiles = new ConcurrentHashMap<>();
+
+    /**
+     * Client of the default profile
+     */
     @Getter
     static OkHttpClient httpClient;
 
-    static {
-        CookieManager cookieManager = new CookieManager();
-        cookieManager.setCookiePolicy(CookiePolicy.ACCEPT_ALL);
-        JavaNetCookieJar cookieJar = new JavaNetCookieJar(cookieManager);
+    /**
+     * Content type of JSON bodies - as RequestBody.create(String, ...) has always sent them
+     */
+    static final MediaType JSON_UTF8 = MediaType.get("application/json; charset=utf-8");
+
+    /**
+     * Codec of JSON bodies
+     */
+    @Getter
+    static volatile JsonCodec jsonCodec = new GsonJsonCodec();
+
+    /**
+     * Timer for retry backoff and hedging - so none of it happens on an Actor's thread
+     */
+    static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "dust-http-scheduler");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Blocking reads of streamed response bodies
+     */
+    static final ExecutorService bodyReaders = Executors.newThreadPerTaskExecutor(
+        Thread.ofVirtual().name("dust-http-body-", 0).factory()
+    );
 
-        //noinspection KotlinInternalInJava
-        httpClient = new OkHttpClient.Builder()
-                .readTimeout(5*60*1000L, TimeUnit.MILLISECONDS)
-                .writeTimeout(60*1000L, TimeUnit.MILLISECONDS)
-                .followRedirects(true)
-                .followSslRedirects(true)
-                .connectionPool(new ConnectionPool(10, 5, TimeUnit.MINUTES))
-                .cookieJar(cookieJar)
-                .build();
+    static {
+        httpClient = register(DEFAULT_PROFILE, new HttpServiceConfig()).getClient();
     }
 
     /**
@@ -103,17 +139,67 @@ public class HttpService {
      */
     public HttpService() {}
 
+    /**
+     * Register (or replace) a named client profile. Each profile has its own connection pool and dispatcher so
+     * e.g. an ActorSystem or group of Actors can be given a client tuned to its load - use the system name as the
+     * profile name for a per-ActorSystem client. A replaced profile is shut down.
+     * @param name of profile
+     * @param config of the client
+     * @return the registered profile
+     */
+    public static HttpClientProfile register(String name, HttpServiceConfig config) {
+        HttpClientProfile profile = new HttpClientProfile(name, config);
+        HttpClientProfile old = profiles.put(name, profile);
+
+        if (DEFAULT_PROFILE.equals(name)) {
+            httpClient = profile.getClient();
+        }
+        if (null != old) {
+            old.shutdown();
+        }
+        return profile;
+    }
+
+    /**
+     * Get a registered profile
+     * @param name of profile. null means the default profile.
+     * @return the profile
+     * @throws IllegalArgumentException if no such profile has been registered
+     */
+    public static HttpClientProfile getProfile(String name) {
+        HttpClientProfile profile = profiles.get(null != name ? name : DEFAULT_PROFILE);
+
+        if (null == profile) {
+            throw new IllegalArgumentException("No HttpService profile: " + name);
+        }
+        return profile;
+    }
+
+    /**
+     * Get the client of a registered profile
+     * @param name of profile. null means the default profile.
+     * @return the client
+     */
+    public static OkHttpClient getHttpClient(String name) {
+        return getProfile(name).getClient();
+    }
+
+    /**
+     * Shut down all profiles
+     */
     public static void shutdown() {
+        profiles.values().forEach(HttpClientProfile::shutdown);
+    }
 
-        httpClient.dispatcher().executorService().shutdown();
-        httpClient.connectionPool().evictAll();
+    /**
+     * Shut down and remove a profile. The default profile is shut down but remains registered.
+     * @param name of profile
+     */
+    public static void shutdown(String name) {
+        HttpClientProfile profile = DEFAULT_PROFILE.equals(name) ? profiles.get(name) : profiles.remove(name);
 
-        if (httpClient.cache() != null) {
-            try {
-                httpClient.cache().close();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+        if (null != profile) {
+            profile.shutdown();
         }
     }
 
@@ -196,6 +282,17 @@ public class HttpService {
         RequestBody rb = RequestBody.create(body, MediaType.get("application/json"));
         return buildRequest(url, POST, rb, new LinkedHashMap<String, String>());
     }
+    /** Build a POST request with a (usually streaming - see {@link RequestBodies}) body
+     *
+     * @param url to post to
+     * @param body to post
+     * @param headers to use
+     * @return a Request object
+     */
+    public static Request buildPostRequest(String url, RequestBody body, Map<String, String> headers) {
+        return buildRequest(url, POST, body, headers);
+    }
+
     /** Build a POST request whose Body is JSON
      *
      * @param url to post to
@@ -204,7 +301,7 @@ public class HttpService {
      * @return a Request object
      */
     public static Request buildPostRequest(String url, Map<String, Object> body, Map<String, String> headers) {
-        RequestBody rb = RequestBody.create(new Gson().toJson(body), MediaType.get("application/json"));
+        RequestBody rb = jsonBody(body);
         return buildRequest(url, POST, rb, headers);
     }
     /** Build a POST request whose Body is JSON. Use default headers
@@ -214,10 +311,73 @@ public class HttpService {
      * @return a Request object
      */
     public static Request buildPostRequest(String url, LinkedHashMap<String, Object> body) {
-        RequestBody rb = RequestBody.create(new Gson().toJson(body), MediaType.get("application/json"));
+        RequestBody rb = jsonBody(body);
         return buildRequest(url, POST, rb, new LinkedHashMap<String, String>());
     }
 
+    /**
+     * Replace the JSON codec used by every request
+     * @param codec the codec
+     */
+    public static void setJsonCodec(JsonCodec codec) {
+        jsonCodec = codec;
+    }
+
+    /**
+     * JSON request body. The value is encoded by the {@link JsonCodec} once, on first use, into a segment buffer
+     * which is then shared (not copied) into the request on each send - so it has a Content-Length and can be resent.
+     * @param value to encode
+     * @return the body
+     */
+    public static RequestBody jsonBody(Object value) {
+        JsonCodec codec = jsonCodec;
+
+        return new RequestBody() {
+            Buffer encoded = null;
+
+            synchronized Buffer encoded() throws IOException {
+                if (null == encoded) {
+                    Buffer buffer = new Buffer();
+                    codec.encode(value, buffer);
+                    encoded = buffer;
+                }
+                return encoded;
+            }
+
+            @Override
+            public MediaType contentType() {
+                return JSON_UTF8;
+            }
+
+            @Override
+            public long contentLength() throws IOException {
+                return encoded().size();
+            }
+
+            @Override
+            public void writeTo(@NotNull BufferedSink sink) throws IOException {
+                Buffer buffer = encoded();
+                buffer.copyTo(sink.getBuffer(), 0, buffer.size());
+                sink.emitCompleteSegments();
+            }
+        };
+    }
+
+    /**
+     * Decode a JSON response body straight from the connection and close the response
+     * @param response to decode
+     * @param type of value
+     * @return the value or null if there is no body
+     * @param <T> type of value
+     * @throws IOException on failure or malformed JSON
+     */
+    public static <T> T decodeJson(Response response, Type type) throws IOException {
+        try (response) {
+            ResponseBody body = response.body();
+            return null != body ? jsonCodec.decode(body.source(), type) : null;
+        }
+    }
+
     /**
      * Convenient query params adder
      * @param path of url (shcheme, host, port, path)
@@ -256,22 +416,152 @@ public class HttpService {
      * @throws InterruptedException if interrupted
      */
     public static Response doRequest(Request request) throws ExecutionException, InterruptedException {
+        return doRequest(DEFAULT_PROFILE, request);
+    }
+
+    /**
+     * Synchronous request on the given profile -- it is the caller's responsibility to close the response
+     * after processing it. If the profile has {@link HttpServiceConfig#blockingCalls(boolean)} the call is
+     * made on this thread (see {@link #execute(String, Request, long)}), otherwise it takes the async path and
+     * this thread waits - if interrupted meanwhile the call is cancelled and any response is closed when it arrives.
+     *
+     * @param profile name of client profile
+     * @param request to perform
+     * @return the Response
+     * @throws ExecutionException if error
+     * @throws InterruptedException if interrupted
+     */
+    public static Response doRequest(String profile, Request request) throws ExecutionException, InterruptedException {
+        if (getProfile(profile).getConfig().isBlockingCalls()) {
+            try {
+                return execute(profile, request, 0L);
+            } catch (InterruptedIOException e) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw (InterruptedException) new InterruptedException(e.getMessage()).initCause(e);
+                }
+                throw new ExecutionException(e);
+            } catch (IOException e) {
+                throw new ExecutionException(e);
+            }
+        }
         CompletableFuture<Response> cf = new CompletableFuture<Response>();
+        Waiter waiter = new Waiter();
+
+        doRequest(
+            profile,
+            request.newBuilder().tag(Waiter.class, waiter).build(),
+            (Response response) -> {
+                if (! cf.complete(response)) {
+                    response.close();
+                }
+                return null;
+            },
+            (IOException e) -> {
+                cf.completeExceptionally(e);
+                return null;
+            }
+        );
+        try {
+            return cf.get();
+        } catch (InterruptedException e) {
+            cf.cancel(false);
+            cancel(profile, waiter);
+            throw e;
+        }
+    }
 
-        httpClient
-            .newCall(request)
-            .enqueue(new Callback() {
-                @Override
-                public void onFailure(@NotNull Call call, @NotNull IOException e) {
-                    cf.completeExceptionally(e);
+    /*
+     * Tags the request of a waiting doRequest() so it can be cancelled. Equal only to itself.
+     */
+    static final class Waiter {}
+
+    /**
+     * Cancel the async requests of a profile which carry tag - set with {@code Request.Builder.tag(tag.getClass(), tag)}.
+     * Requests waiting to retry or for the adaptive limiter are failed at once, and those queued or running in the
+     * dispatcher are cancelled. Retries and hedges of a request carry its tag. A coalesced call other requests
+     * have joined is left to run.
+     * @param profile name of client profile
+     * @param tag to match
+     * @return requests cancelled
+     */
+    public static int cancel(String profile, Object tag) {
+        HttpClientProfile p = getProfile(profile);
+        Dispatcher dispatcher = p.getClient().dispatcher();
+        int cancelled = 0;
+
+        for (RetryingCall retrying : p.getRetrying()) {
+            if (cancels(retrying.request, tag) && retrying.cancel()) {
+                ++cancelled;
+            }
+        }
+        for (LimitedCall limited : p.getLimited()) {
+            /*
+             * A retrying call has already cancelled (and counted) its calls, but they still need taking from the queue
+             */
+            boolean counted = limited.call.isCanceled();
+            if (cancels(limited.call.request(), tag) && limited.cancel() && ! counted) {
+                ++cancelled;
+            }
+        }
+        for (List<Call> calls : List.of(dispatcher.queuedCalls(), dispatcher.runningCalls())) {
+            for (Call call : calls) {
+                if (! call.isCanceled() && cancels(call.request(), tag)) {
+                    call.cancel();
+                    ++cancelled;
                 }
+            }
+        }
+        return cancelled;
+    }
 
-                @Override
-                public void onResponse(@NotNull Call call, @NotNull Response response)  {
-                    cf.complete(response);
+    static boolean cancels(Request request, Object tag) {
+        RequestCoalescer.Flight flight = request.tag(RequestCoalescer.Flight.class);
+        return tag.equals(request.tag(tag.getClass())) && (null == flight || ! flight.shared());
+    }
+
+    /**
+     * Blocking request on the default profile
+     * @param request to perform
+     * @return the Response - to be closed by the caller
+     * @throws IOException on failure
+     */
+    public static Response execute(Request request) throws IOException {
+        return execute(DEFAULT_PROFILE, request, 0L);
+    }
+
+    /**
+     * Blocking request made with call.execute() on this thread - cheap on a virtual thread, where many may block
+     * at once without tying up platform threads. timeoutMs bounds the whole call (connect, write, read) and an
+     * interrupt cancels it. The async path's limiter, retry, hedging, coalescing and cache do not apply.
+     * @param profile name of client profile
+     * @param request to perform
+     * @param timeoutMs deadline for the whole call - 0 for the profile's callTimeout
+     * @return the Response - to be closed by the caller
+     * @throws IOException on failure, InterruptedIOException on timeout or interrupt
+     */
+    public static Response execute(String profile, Request request, long timeoutMs) throws IOException {
+        Call call = getHttpClient(profile).newCall(request);
+
+        if (timeoutMs > 0) {
+            call.timeout().timeout(timeoutMs, TimeUnit.MILLISECONDS);
+        }
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException("Interrupted before " + request.url());
+        }
+        try {
+            return call.execute();
+        } catch (IOException e) {
+            /*
+             * An interrupted virtual thread's socket is closed under it - make sure OkHttp lets the call go
+             */
+            if (Thread.currentThread().isInterrupted()) {
+                call.cancel();
+                if (! (e instanceof InterruptedIOException)) {
+                    throw (InterruptedIOException) new InterruptedIOException("Interrupted " + request.url()).initCause(e);
                 }
-            });
-        return cf.get();
+            }
+            throw e;
+        }
     }
 
     /**
@@ -285,21 +575,258 @@ public class HttpService {
             Function<Response, Void> succeed,
             Function<IOException, Void> fail
     ) {
+        doRequest(DEFAULT_PROFILE, request, succeed, fail);
+    }
+
+    /**
+     * Asynchronous request on the given profile
+     * @param profile name of client profile
+     * @param request to perform
+     * @param succeed called on success passing in Response
+     * @param fail called on error passing in exception
+     */
+    public static void doRequest(
+            String profile,
+            Request request,
+            Function<Response, Void> succeed,
+            Function<IOException, Void> fail
+    ) {
+        HttpClientProfile p = getProfile(profile);
+        Callback callback = callback(request, succeed, fail);
+        ResponseCache cache = p.getConfig().getResponseCache();
+
+        if (null != cache && cache.caches(request)) {
+            cache.handle(p.getClient(), request, callback, (r, c) -> dispatch(p, r, c));
+        } else
+            dispatch(p, request, callback);
+    }
+
+    /**
+     * Asynchronous request whose response body is streamed to the receiver. The receiver gets an
+     * {@link HttpBodyStartMsg} once the headers arrive, then {@link com.mentalresonance.dust.http.msgs.HttpBodyChunkMsg}s
+     * only as it grants credit on the {@link HttpBodyStream}, then an {@link HttpBodyEndMsg}. If the request fails
+     * only the HttpBodyEndMsg is sent. Bypasses the response cache and coalescing.
+     * @param profile name of client profile
+     * @param request to perform
+     * @param receiver of the body messages
+     * @param tag returned in the body messages
+     * @param initialCredit chunks which may be sent before the receiver grants more
+     */
+    public static void streamBody(
+            String profile,
+            Request request,
+            ActorRef receiver,
+            Serializable tag,
+            long initialCredit
+    ) {
+        HttpClientProfile p = getProfile(profile);
+
+        execute(p, request, new Callback() {
+            @Override
+            public void onFailure(@NotNull Call call, @NotNull IOException e) {
+                receiver.tell(new HttpBodyEndMsg(0L, e, tag), null);
+            }
+
+            @Override
+            public void onResponse(@NotNull Call call, @NotNull Response response) {
+                HttpBodyStream stream = new HttpBodyStream(call, response, receiver, tag, p.getChunkPool());
+                receiver.tell(
+                    new HttpBodyStartMsg(
+                        response.code(),
+                        new LinkedHashMap<>(response.headers().toMultimap()),
+                        response.body().contentLength(),
+                        tag,
+                        stream
+                    ),
+                    null
+                );
+                stream.request(initialCredit);
+            }
+        });
+    }
+
+    /*
+     * Join an identical in-flight request if coalescing, else make it
+     */
+    static void dispatch(HttpClientProfile p, Request request, Callback callback) {
+        RequestCoalescer coalescer = p.getCoalescer();
+
+        if (null != coalescer && coalescer.coalesces(request)) {
+            coalescer.join(
+                request,
+                callback,
+                leader -> execute(p, request.newBuilder().tag(RequestCoalescer.Flight.class, (RequestCoalescer.Flight) leader).build(), leader)
+            );
+        } else
+            execute(p, request, callback);
+    }
+
+    /*
+     * Make the request - retrying and hedging if so configured
+     */
+    static void execute(HttpClientProfile p, Request request, Callback callback) {
+        RetryPolicy retry = policy(request, RetryPolicy.class, p.getConfig().getRetryPolicy());
+        HedgePolicy hedge = policy(request, HedgePolicy.class, p.getConfig().getHedgePolicy());
+
+        if (null != retry || null != hedge) {
+            new RetryingCall(p, request, callback, retry, hedge).start();
+        } else
+            attempt(p, p.getClient().newCall(request), callback);
+    }
+
+    /*
+     * Copy of response with a buffered body - so a response can be handed to several recipients
+     */
+    static Response withBody(Response response, byte[] body) {
+        ResponseBody original = response.body();
+        MediaType contentType = null != original ? original.contentType() : null;
+        return response.newBuilder().body(ResponseBody.create(body, contentType)).build();
+    }
+
+    /**
+     * Current adaptive concurrency limits of the given profile
+     * @param profile name of client profile
+     * @return map of host to limit - empty if the profile has no adaptive limiter
+     */
+    public static Map<String, Integer> getConcurrencyLimits(String profile) {
+        AdaptiveConcurrencyLimiter limiter = getProfile(profile).getConfig().getAdaptiveLimiter();
+        return null != limiter ? limiter.getLimits() : new LinkedHashMap<>();
+    }
+
+    /*
+     * A policy tagged on the request overrides the profile's
+     */
+    static <T> T policy(Request request, Class<T> type, T profileDefault) {
+        T tagged = request.tag(type);
+        return null != tagged ? tagged : profileDefault;
+    }
+
+    /*
+     * Adapt the succeed/fail functions to an OkHttp Callback
+     */
+    static Callback callback(
+            Request request,
+            Function<Response, Void> succeed,
+            Function<IOException, Void> fail
+    ) {
+        return new Callback() {
+            @Override
+            public void onFailure(@NotNull Call call, @NotNull IOException e) {
+                log.trace("Request: {} failed: {}", request, e.getMessage());
+                fail.apply(e);
+            }
+
+            @Override
+            public void onResponse(@NotNull Call call, @NotNull Response response) {
+                succeed.apply(response);
+            }
+        };
+    }
+
+    /*
+     * Make one attempt of a call - failing fast if the host's circuit is open, and under the profile's adaptive
+     * limit if it has one. Cancelled calls give up their slots without counting as an outcome, as do calls the
+     * limiter rejects since the host was never reached.
+     */
+    static void attempt(HttpClientProfile profile, Call call, Callback callback) {
+        CircuitBreaker breaker = profile.getConfig().getCircuitBreaker();
+        AdaptiveConcurrencyLimiter limiter = profile.getConfig().getAdaptiveLimiter();
+        String host = call.request().url().host();
+        Callback unwrapped = callback;
+        long admission = null != breaker ? breaker.allow(host) : 0L;
+
+        if (null != breaker) {
+            if (CircuitBreaker.REFUSED == admission) {
+                callback.onFailure(call, new CircuitBreakerOpenException(host));
+                return;
+            }
+            callback = new BreakerCallback(breaker, host, admission, callback);
+        }
+        if (null == limiter) {
+            call.enqueue(callback);
+        } else {
+            LimitedCall limited = new LimitedCall(profile, limiter, host, call, callback);
+
+            profile.getLimited().add(limited);
+            limiter.acquire(
+                host,
+                limited,
+                (IOException e) -> {
+                    profile.getLimited().remove(limited);
+                    if (null != breaker) {
+                        breaker.cancelled(host, admission);
+                    }
+                    unwrapped.onFailure(call, e);
+                }
+            );
+        }
+    }
+
+    /*
+     * A call under the adaptive limiter - run when it has a slot. Until then cancel() can take it from the queue.
+     */
+    record LimitedCall(
+        HttpClientProfile profile, AdaptiveConcurrencyLimiter limiter, String host, Call call, Callback next
+    ) implements Runnable {
+
+        @Override
+        public void run() {
+            long start = System.nanoTime();
 
-        httpClient
-            .newCall(request)
-            .enqueue(new Callback() {
+            profile.getLimited().remove(this);
+            call.enqueue(new Callback() {
                 @Override
                 public void onFailure(@NotNull Call call, @NotNull IOException e) {
-                    log.trace("Request: {} failed: {}", request, e.getMessage());
-                    fail.apply(e);
+                    if (call.isCanceled()) {
+                        limiter.cancelled(host);
+                    } else
+                        limiter.release(host, System.nanoTime() - start, true);
+                    next.onFailure(call, e);
                 }
 
                 @Override
-                public void onResponse(@NotNull Call call, @NotNull Response response) {
-                    succeed.apply(response);
+                public void onResponse(@NotNull Call call, @NotNull Response response) throws IOException {
+                    limiter.release(host, System.nanoTime() - start, AdaptiveConcurrencyLimiter.overloaded(response.code()));
+                    next.onResponse(call, response);
                 }
             });
+        }
+
+        /*
+         * true if still waiting - it then fails as cancelled
+         */
+        boolean cancel() {
+            if (! limiter.withdraw(host, this)) {
+                return false;
+            }
+            profile.getLimited().remove(this);
+            call.cancel();
+            next.onFailure(call, new IOException("Canceled"));
+            return true;
+        }
+    }
+
+    /*
+     * Reports the outcome of a call to the circuit breaker
+     */
+    record BreakerCallback(CircuitBreaker breaker, String host, long admission, Callback next) implements Callback {
+        @Override
+        public void onFailure(@NotNull Call call, @NotNull IOException e) {
+            if (call.isCanceled()) {
+                breaker.cancelled(host, admission);
+            } else
+                breaker.failure(host, admission);
+            next.onFailure(call, e);
+        }
+
+        @Override
+        public void onResponse(@NotNull Call call, @NotNull Response response) throws IOException {
+            if (CircuitBreaker.failed(response.code())) {
+                breaker.failure(host, admission);
+            } else
+                breaker.success(host, admission);
+            next.onResponse(call, response);
+        }
     }
 
     /**
@@ -314,16 +841,122 @@ public class HttpService {
             ActorRef client,
             ActorRef server
     ) {
-        EventSource.Factory factory = createFactory(httpClient);
-        return factory.newEventSource(request, new MyEventSourceListener(client, server));
+        return doRequest(DEFAULT_PROFILE, request, client, server);
+    }
+
+    /**
+     * Server Sent request on the given profile. Initiates the request and passes the server-sent events to the listener
+     * @param profile name of client profile
+     * @param request which initiates the stream of server sent events
+     * @param server processes request and generates a series of StreamingHttpMsgs sent to
+     * @param client recipient of StreamingHttpMsgs Msgs
+     * @return Event source. This can be cancelled at any time, closing the stream.
+     */
+    public static EventSource doRequest(
+            String profile,
+            Request request,
+            ActorRef client,
+            ActorRef server
+    ) {
+        return doRequest(profile, request, client, server, null);
+    }
+
+    /**
+     * Server Sent request on the given profile with batching, accounting etc. as given by options.
+     * @param profile name of client profile
+     * @param request which initiates the stream of server sent events
+     * @param client recipient of StreamingHttpMsgs Msgs
+     * @param server processes request and generates a series of StreamingHttpMsgs sent to
+     * @param options of the stream. null for the plain stream.
+     * @return Event source. This can be cancelled at any time, closing the stream.
+     */
+    public static EventSource doRequest(
+            String profile,
+            Request request,
+            ActorRef client,
+            ActorRef server,
+            StreamingHttpOptions options
+    ) {
+        HttpClientProfile p = getProfile(profile);
+        CircuitBreaker breaker = p.getConfig().getCircuitBreaker();
+        String host = request.url().host();
+        long admission = null != breaker ? breaker.allow(host) : 0L;
+
+        if (CircuitBreaker.REFUSED == admission) {
+            StreamingHttpFailureMsg failure = new StreamingHttpFailureMsg(new CircuitBreakerOpenException(host), null);
+            client.tell(failure, null);
+            server.tell(failure, null);
+            return new EventSource() {
+                @NotNull
+                @Override
+                public Request request() {
+                    return request;
+                }
+
+                @Override
+                public void cancel() {}
+            };
+        }
+        EventSource.Factory factory = createFactory(p.getClient());
+        boolean ours = null != options && (options.isReconnect() || options.isLazyParsing());
+        /*
+         * Our own event source reports each of its connection attempts to the breaker
+         */
+        if (null == options) {
+            MyEventSourceListener listener = new MyEventSourceListener(client, server, breaker, host, admission);
+            return new CancellingEventSource(factory.newEventSource(request, listener), () -> listener.cancelled = true);
+        }
+        StreamingListener listener = new StreamingListener(client, server, options, ours ? null : breaker, host, admission);
+
+        if (ours) {
+            ReconnectingEventSource source = new ReconnectingEventSource(
+                p.getClient(), request, listener, options, client, server, breaker, host, admission
+            );
+            source.connect();
+            return source;
+        }
+        return new CancellingEventSource(factory.newEventSource(request, listener), () -> listener.cancelled = true);
+    }
+
+    /*
+     * Tells the listener before cancelling, so a stream the caller cancels before it opens is reported to the
+     * breaker as cancelled rather than failed
+     */
+    record CancellingEventSource(EventSource source, Runnable cancelling) implements EventSource {
+        @NotNull
+        @Override
+        public Request request() {
+            return source.request();
+        }
+
+        @Override
+        public void cancel() {
+            cancelling.run();
+            source.cancel();
+        }
     }
 
     static class MyEventSourceListener extends EventSourceListener {
         ActorRef client, server;
+        /*
+         * Only the outcome of opening the stream is reported to the breaker
+         */
+        CircuitBreaker breaker;
+        String host;
+        long admission;
+        boolean opened = false;
+        volatile boolean cancelled = false;
 
         public MyEventSourceListener(ActorRef client, ActorRef server) {
+            this(client, server, null, null, 0L);
+        }
+
+        public MyEventSourceListener(ActorRef client, ActorRef server, CircuitBreaker breaker, String host, long admission) {
             this.client = client;
             this.server = server;
+            this.breaker = breaker;
+            this.host = host;
+            this.admission = admission;
         }
         @Override
         public void onClosed(@NotNull EventSource eventSource) {
@@ -340,6 +973,12 @@ public class HttpService {
 
         @Override
         public void onFailure(@NotNull EventSource eventSource, @Nullable Throwable t, @Nullable Response response) {
+            if (null != breaker && ! opened) {
+                if (cancelled) {
+                    breaker.cancelled(host, admission);
+                } else
+                    breaker.failure(host, admission);
+            }
             client.tell( new StreamingHttpFailureMsg(t, response), null);
             server.tell( new StreamingHttpFailureMsg(t, response), null);
         }
@@ -350,6 +989,10 @@ public class HttpService {
          */
         @Override
         public void onOpen(@NotNull EventSource eventSource, @NotNull Response response) {
+            opened = true;
+            if (null != breaker) {
+                breaker.success(host, admission);
+            }
             client.tell(new StreamingHttpStartMsg(), server);
         }
     }
@@ -0,0 +1,385 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mentalresonance.dust.http.service;
+
+import lombok.Getter;
+import okhttp3.*;
+
+import java.io.File;
+import java.net.CookieManager;
+import java.net.CookiePolicy;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Configuration of a named {@link HttpService} client profile. Setters are fluent so a profile can be
+ * declared in one expression, e.g.
+ * <pre>
+ *     HttpService.register("crawler", new HttpServiceConfig()
+ *         .maxIdleConnections(200)
+ *         .maxRequests(512)
+ *         .maxRequestsPerHost(32));
+ * </pre>
+ * The defaults reproduce the original single HttpService client.
+ */
+@Getter
+public class HttpServiceConfig {
+
+    /**
+     * Cookie jar shared by every profile which does not supply its own
+     */
+    static final CookieJar sharedCookieJar;
+
+    static {
+        CookieManager cookieManager = new CookieManager();
+        cookieManager.setCookiePolicy(CookiePolicy.ACCEPT_ALL);
+        sharedCookieJar = new JavaNetCookieJar(cookieManager);
+    }
+
+    /**
+     * Maximum idle connections held in the connection pool
+     */
+    int maxIdleConnections = 10;
+    /**
+     * How long an idle connection is kept alive in ms
+     */
+    long keepAliveMs = 5*60*1000L;
+    /**
+     * Maximum concurrent requests in the dispatcher
+     */
+    int maxRequests = 64;
+    /**
+     * Maximum concurrent requests to a single host in the dispatcher
+     */
+    int maxRequestsPerHost = 5;
+    /**
+     * Connect timeout in ms
+     */
+    long connectTimeoutMs = 10*1000L;
+    /**
+     * Read timeout in ms
+     */
+    long readTimeoutMs = 5*60*1000L;
+    /**
+     * Write timeout in ms
+     */
+    long writeTimeoutMs = 60*1000L;
+    /**
+     * Timeout of the complete call in ms. 0 means no timeout.
+     */
+    long callTimeoutMs = 0L;
+    /**
+     * Protocols to negotiate. null means the OkHttp default.
+     */
+    List<Protocol> protocols = null;
+    /**
+     * Follow redirects
+     */
+    boolean followRedirects = true;
+    /**
+     * Cookie jar. null means the jar shared by all profiles.
+     */
+    CookieJar cookieJar = null;
+    /**
+     * Adaptive per host concurrency limiter on the async request path. null for none.
+     */
+    AdaptiveConcurrencyLimiter adaptiveLimiter = null;
+    /**
+     * Retry policy for async requests. null for none.
+     */
+    RetryPolicy retryPolicy = null;
+    /**
+     * Hedging policy for async requests. null for none.
+     */
+    HedgePolicy hedgePolicy = null;
+    /**
+     * Per host circuit breaker for async and server sent requests. null for none.
+     */
+    CircuitBreaker circuitBreaker = null;
+    /**
+     * Headers which (with method and url) identify identical requests for coalescing. null for no coalescing.
+     */
+    String[] coalesceHeaders = null;
+    /**
+     * In-memory response cache. null for none.
+     */
+    ResponseCache responseCache = null;
+    /**
+     * Directory of OkHttp's disk cache. null for none.
+     */
+    File diskCacheDirectory = null;
+    /**
+     * Size of OkHttp's disk cache in bytes
+     */
+    long diskCacheBytes = 0L;
+    /**
+     * Size of the chunks streamed response bodies are read in
+     */
+    int bodyChunkBytes = 64*1024;
+    /**
+     * Maximum free chunk buffers pooled for reuse
+     */
+    int bodyChunkPoolSize = 64;
+    /**
+     * Synchronous requests run call.execute() on the calling thread rather than wait on the dispatcher
+     */
+    boolean blockingCalls = false;
+    /**
+     * The dispatcher runs async calls on virtual threads
+     */
+    boolean virtualThreadDispatcher = false;
+
+    /**
+     * Constructor - defaults as for the original HttpService client
+     */
+    public HttpServiceConfig() {}
+
+    /**
+     * @param maxIdleConnections connection pool size
+     * @return this
+     */
+    public HttpServiceConfig maxIdleConnections(int maxIdleConnections) {
+        this.maxIdleConnections = maxIdleConnections;
+        return this;
+    }
+
+    /**
+     * @param keepAliveMs idle connection keep alive in ms
+     * @return this
+     */
+    public HttpServiceConfig keepAliveMs(long keepAliveMs) {
+        this.keepAliveMs = keepAliveMs;
+        return this;
+    }
+
+    /**
+     * @param maxRequests dispatcher limit on concurrent requests
+     * @return this
+     */
+    public HttpServiceConfig maxRequests(int maxRequests) {
+        this.maxRequests = maxRequests;
+        return this;
+    }
+
+    /**
+     * @param maxRequestsPerHost dispatcher limit on concurrent requests per host
+     * @return this
+     */
+    public HttpServiceConfig maxRequestsPerHost(int maxRequestsPerHost) {
+        this.maxRequestsPerHost = maxRequestsPerHost;
+        return this;
+    }
+
+    /**
+     * @param connectTimeoutMs connect timeout in ms
+     * @return this
+     */
+    public HttpServiceConfig connectTimeoutMs(long connectTimeoutMs) {
+        this.connectTimeoutMs = connectTimeoutMs;
+        return this;
+    }
+
+    /**
+     * @param readTimeoutMs read timeout in ms
+     * @return this
+     */
+    public HttpServiceConfig readTimeoutMs(long readTimeoutMs) {
+        this.readTimeoutMs = readTimeoutMs;
+        return this;
+    }
+
+    /**
+     * @param writeTimeoutMs write timeout in ms
+     * @return this
+     */
+    public HttpServiceConfig writeTimeoutMs(long writeTimeoutMs) {
+        this.writeTimeoutMs = writeTimeoutMs;
+        return this;
+    }
+
+    /**
+     * @param callTimeoutMs timeout on the complete call in ms (0 for none)
+     * @return this
+     */
+    public HttpServiceConfig callTimeoutMs(long callTimeoutMs) {
+        this.callTimeoutMs = callTimeoutMs;
+        return this;
+    }
+
+    /**
+     * @param protocols to negotiate - e.g. [HTTP_2, HTTP_1_1]
+     * @return this
+     */
+    public HttpServiceConfig protocols(List<Protocol> protocols) {
+        this.protocols = protocols;
+        return this;
+    }
+
+    /**
+     * @param followRedirects follow (ssl) redirects
+     * @return this
+     */
+    public HttpServiceConfig followRedirects(boolean followRedirects) {
+        this.followRedirects = followRedirects;
+        return this;
+    }
+
+    /**
+     * @param cookieJar cookie jar for this profile
+     * @return this
+     */
+    public HttpServiceConfig cookieJar(CookieJar cookieJar) {
+        this.cookieJar = cookieJar;
+        return this;
+    }
+
+    /**
+     * @param adaptiveLimiter adaptive per host concurrency limiter for async requests
+     * @return this
+     */
+    public HttpServiceConfig adaptiveLimiter(AdaptiveConcurrencyLimiter adaptiveLimiter) {
+        this.adaptiveLimiter = adaptiveLimiter;
+        return this;
+    }
+
+    /**
+     * @param retryPolicy retry policy for async requests
+     * @return this
+     */
+    public HttpServiceConfig retryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+        return this;
+    }
+
+    /**
+     * @param hedgePolicy hedging policy for async requests
+     * @return this
+     */
+    public HttpServiceConfig hedgePolicy(HedgePolicy hedgePolicy) {
+        this.hedgePolicy = hedgePolicy;
+        return this;
+    }
+
+    /**
+     * @param circuitBreaker per host circuit breaker for async and server sent requests
+     * @return this
+     */
+    public HttpServiceConfig circuitBreaker(CircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+        return this;
+    }
+
+    /**
+     * Coalesce identical in-flight GET and HEAD requests into one upstream call
+     * @param keyHeaders headers whose values, with the method and url, make requests identical. Authorization, Cookie,
+     *                   Range, If-* and Accept* headers are always included
+     * @return this
+     */
+    public HttpServiceConfig coalesce(String... keyHeaders) {
+        this.coalesceHeaders = keyHeaders;
+        return this;
+    }
+
+    /**
+     * @param responseCache in-memory cache of GET responses
+     * @return this
+     */
+    public HttpServiceConfig responseCache(ResponseCache responseCache) {
+        this.responseCache = responseCache;
+        return this;
+    }
+
+    /**
+     * Use OkHttp's disk cache, which follows http caching rules and revalidates with conditional requests
+     * (If-None-Match / If-Modified-Since). Its counters are on {@code HttpService.getHttpClient(profile).cache()}.
+     * @param directory of the cache - not to be shared with another profile
+     * @param maxBytes size of the cache
+     * @return this
+     */
+    public HttpServiceConfig diskCache(File directory, long maxBytes) {
+        this.diskCacheDirectory = directory;
+        this.diskCacheBytes = maxBytes;
+        return this;
+    }
+
+    /**
+     * @param bodyChunkBytes size of streamed body chunks
+     * @param bodyChunkPoolSize free chunk buffers kept for reuse
+     * @return this
+     */
+    public HttpServiceConfig bodyChunks(int bodyChunkBytes, int bodyChunkPoolSize) {
+        this.bodyChunkBytes = bodyChunkBytes;
+        this.bodyChunkPoolSize = bodyChunkPoolSize;
+        return this;
+    }
+
+    /**
+     * Synchronous {@link HttpService#doRequest(String, Request)} runs the call on the calling thread with
+     * call.execute() - one thread and no handoff, and not counted against the dispatcher's limits. Meant for
+     * virtual threads. The async path's limiter, retry, hedging, coalescing and cache do not apply.
+     * @param blockingCalls run synchronous requests on the calling thread
+     * @return this
+     */
+    public HttpServiceConfig blockingCalls(boolean blockingCalls) {
+        this.blockingCalls = blockingCalls;
+        return this;
+    }
+
+    /**
+     * Run the dispatcher's async calls on a virtual thread each instead of its pool of platform threads. The
+     * maxRequests and maxRequestsPerHost limits still apply.
+     * @param virtualThreadDispatcher use virtual threads
+     * @return this
+     */
+    public HttpServiceConfig virtualThreadDispatcher(boolean virtualThreadDispatcher) {
+        this.virtualThreadDispatcher = virtualThreadDispatcher;
+        return this;
+    }
+
+    /**
+     * Build the OkHttpClient described by this config
+     * @return the client
+     */
+    OkHttpClient buildClient() {
+        Dispatcher dispatcher = virtualThreadDispatcher ?
+            new Dispatcher(Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("dust-http-call-", 0).factory())) :
+            new Dispatcher();
+        dispatcher.setMaxRequests(maxRequests);
+        dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+
+        OkHttpClient.Builder builder = new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .connectTimeout(connectTimeoutMs, TimeUnit.MILLISECONDS)
+                .readTimeout(readTimeoutMs, TimeUnit.MILLISECONDS)
+                .writeTimeout(writeTimeoutMs, TimeUnit.MILLISECONDS)
+                .callTimeout(callTimeoutMs, TimeUnit.MILLISECONDS)
+                .followRedirects(followRedirects)
+                .followSslRedirects(followRedirects)
+                .connectionPool(new ConnectionPool(maxIdleConnections, keepAliveMs, TimeUnit.MILLISECONDS))
+                .cookieJar(null != cookieJar ? cookieJar : sharedCookieJar);
+
+        if (null != protocols) {
+            builder.protocols(protocols);
+        }
+        if (null != diskCacheDirectory) {
+            builder.cache(new Cache(diskCacheDirectory, diskCacheBytes));
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mentalresonance.dust.http.service;
+
+import okio.BufferedSink;
+import okio.BufferedSource;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+/**
+ * Encodes and decodes JSON bodies directly to and from Okio sinks and sources. Implementations must be thread safe
+ * as one instance serves every request. Install with {@link HttpService#setJsonCodec(JsonCodec)} -
+ * the default is a {@link GsonJsonCodec}.
+ */
+public interface JsonCodec {
+
+    /**
+     * Write value as JSON (UTF-8)
+     * @param value to write
+     * @param sink to write to
+     * @throws IOException on failure
+     */
+    void encode(Object value, BufferedSink sink) throws IOException;
+
+    /**
+     * Read a value from JSON
+     * @param source to read
+     * @param type of value
+     * @return the value
+     * @param <T> type of value
+     * @throws IOException on failure or malformed JSON
+     */
+    <T> T decode(BufferedSource source, Type type) throws IOException;
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mentalresonance.dust.http.service;
+
+import com.mentalresonance.dust.core.actors.ActorRef;
+import com.mentalresonance.dust.http.msgs.WebsocketBinaryMsg;
+import com.mentalresonance.dust.http.msgs.WebsocketCloseMsg;
+import com.mentalresonance.dust.http.msgs.WebsocketConnectFailedMsg;
+import com.mentalresonance.dust.http.msgs.WebsocketOpenMsg;
+import com.mentalresonance.dust.http.msgs.WebsocketPongMsg;
+import com.mentalresonance.dust.http.msgs.WebsocketTextMsg;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.websocket.CloseReason;
+import javax.websocket.Session;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+
+/**
+ * {@link WebsocketHandler} which turns websocket events into messages told to an Actor. Text and binary messages
+ * are counted until the Actor reports them {@link #consumed()} and at most inboundCapacity are outstanding - beyond
+ * that the {@link WebsocketOptions.Overflow} policy applies. Open and close are always delivered, as are pongs.
+ * <p>
+ * If partial messages are wanted each part arrives as its own {@link WebsocketTextMsg} or {@link WebsocketBinaryMsg}
+ * with {@code part} set, and counts against the capacity like a whole message.
+ * </p>
+ */
+@Slf4j
+public class MailboxWebsocketHandler implements WebsocketHandler {
+
+    final ActorRef target;
+    final int capacity;
+    final WebsocketOptions.Overflow overflow;
+    final boolean partialMessages;
+
+    int depth = 0;
+    long dropped = 0L;
+    /**
+     * The session once open
+     */
+    @Getter
+    volatile Session session = null;
+
+    /**
+     * Constructor
+     * @param target Actor to tell
+     * @param options giving capacity and overflow policy
+     */
+    public MailboxWebsocketHandler(ActorRef target, WebsocketOptions options) {
+        this(target, options, false);
+    }
+
+    /**
+     * Constructor
+     * @param target Actor to tell
+     * @param options giving capacity and overflow policy
+     * @param partialMessages if true deliver messages in parts as they arrive
+     */
+    public MailboxWebsocketHandler(ActorRef target, WebsocketOptions options, boolean partialMessages) {
+        this.target = target;
+        this.capacity = options.getInboundCapacity();
+        this.overflow = options.getOverflow();
+        this.partialMessages = partialMessages;
+    }
+
+    /**
+     * @return messages told but not yet consumed
+     */
+    public synchronized int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return messages dropped on overflow
+     */
+    public synchronized long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * The Actor has processed a text or binary message
+     */
+    public synchronized void consumed() {
+        if (depth > 0) {
+            --depth;
+            notifyAll();
+        }
+    }
+
+    @Override
+    public void onOpen(Session userSession) {
+        session = userSession;
+        target.tell(new WebsocketOpenMsg(), null);
+    }
+
+    @Override
+    public void onClose(Session userSession, CloseReason reason) {
+        synchronized (this) {
+            notifyAll();
+        }
+        target.tell(new WebsocketCloseMsg(reason.getCloseCode().getCode(), reason.getReasonPhrase()), null);
+    }
+
+    @Override
+    public void onConnectFailed(Throwable cause) {
+        target.tell(new WebsocketConnectFailedMsg(cause), null);
+    }
+
+    @Override
+    public void onMessage(String message) {
+        deliver(new WebsocketTextMsg(message));
+    }
+
+    /*
+     * Buffers may belong to the websocket so are copied
+     */
+    @Override
+    public void onBinaryMessage(ByteBuffer message) {
+        deliver(new WebsocketBinaryMsg(copy(message)));
+    }
+
+    @Override
+    public boolean partialMessages() {
+        return partialMessages;
+    }
+
+    @Override
+    public void onMessagePart(String part, boolean last) {
+        deliver(new WebsocketTextMsg(part, last));
+    }
+
+    @Override
+    public void onBinaryMessagePart(ByteBuffer part, boolean last) {
+        deliver(new WebsocketBinaryMsg(copy(part), last));
+    }
+
+    @Override
+    public void onPong(ByteBuffer payload) {
+        target.tell(new WebsocketPongMsg(copy(payload)), null);
+    }
+
+    static byte[] copy(ByteBuffer buffer) {
+        byte[] data = new byte[buffer.remaining()];
+        buffer.get(data);
+        return data;
+    }
+
+    /*
+     * Runs on the websocket's read thread
+     */
+    void deliver(Serializable msg) {
+        boolean close = false;
+
+        synchronized (this) {
+            if (depth >= capacity) {
+                switch (overflow) {
+                    case DROP_NEWEST -> {
+                        ++dropped;
+                        return;
+                    }
+                    case CLOSE -> close = true;
+                    case BLOCK -> {
+                        while (depth >= capacity && null != session && session.isOpen()) {
+                            try {
+                                wait(100L);
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                                ++dropped;
+                                return;
+                            }
+                        }
+                    }
+                }
+            }
+            if (! close) {
+                ++depth;
+            }
+        }
+        if (close) {
+            log.warn("Inbound websocket messages exceed {} - closing", capacity);
+            try {
+                session.close(new CloseReason(CloseReason.CloseCodes.TRY_AGAIN_LATER, "Consumer overloaded"));
+            } catch (IOException e) {
+                log.warn("Closing websocket: {}", e.getMessage());
+            }
+        } else
+            target.tell(msg, null);
+    }
+}
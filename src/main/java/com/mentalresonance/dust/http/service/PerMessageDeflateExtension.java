@@ -0,0 +1,271 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mentalresonance.dust.http.service;
+
+import lombok.Getter;
+import org.glassfish.tyrus.core.ProtocolException;
+import org.glassfish.tyrus.core.TyrusExtension;
+import org.glassfish.tyrus.core.extension.ExtendedExtension;
+import org.glassfish.tyrus.core.frame.Frame;
+
+import javax.websocket.Extension;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Client side permessage-deflate (RFC 7692) as a Tyrus extension. Messages of at least minBytes are compressed at
+ * the given level - smaller ones are sent as is, which the protocol allows message by message. Without context
+ * takeover the compressor (client) or decompressor (server) starts afresh with every message, trading ratio for
+ * memory. The server may ask for no context takeover in either direction whatever we offer.
+ * <p>
+ * State is per connection and kept in Tyrus's extension context. Tyrus frames and writes one message at a time
+ * so frames are compressed in the order they go out.
+ * </p>
+ */
+@Getter
+public class PerMessageDeflateExtension implements ExtendedExtension {
+
+    /**
+     * Extension name
+     */
+    public static final String NAME = "permessage-deflate";
+
+    static final byte[] TAIL = { 0, 0, (byte) 0xff, (byte) 0xff };
+    static final String STATE = PerMessageDeflateExtension.class.getName();
+    static final String CLIENT_NO_CONTEXT_TAKEOVER = "client_no_context_takeover";
+    static final String SERVER_NO_CONTEXT_TAKEOVER = "server_no_context_takeover";
+
+    /**
+     * Deflater compression level
+     */
+    final int level;
+    /**
+     * Smallest message compressed
+     */
+    final int minBytes;
+    /**
+     * Reset our compressor after each message
+     */
+    final boolean clientNoContextTakeover;
+    /**
+     * Ask the server to reset its compressor after each message
+     */
+    final boolean serverNoContextTakeover;
+
+    /**
+     * Constructor
+     * @param level 0-9 or Deflater.DEFAULT_COMPRESSION
+     * @param minBytes smallest message compressed
+     * @param clientNoContextTakeover reset our compressor after each message
+     * @param serverNoContextTakeover ask the server to reset its compressor after each message
+     */
+    public PerMessageDeflateExtension(int level, int minBytes, boolean clientNoContextTakeover, boolean serverNoContextTakeover) {
+        this.level = level;
+        this.minBytes = minBytes;
+        this.clientNoContextTakeover = clientNoContextTakeover;
+        this.serverNoContextTakeover = serverNoContextTakeover;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    /**
+     * @return the parameters offered
+     */
+    @Override
+    public List<Extension.Parameter> getParameters() {
+        List<Extension.Parameter> parameters = new ArrayList<>(2);
+
+        if (clientNoContextTakeover) {
+            parameters.add(new TyrusExtension.TyrusParameter(CLIENT_NO_CONTEXT_TAKEOVER, null));
+        }
+        if (serverNoContextTakeover) {
+            parameters.add(new TyrusExtension.TyrusParameter(SERVER_NO_CONTEXT_TAKEOVER, null));
+        }
+        return parameters;
+    }
+
+    /*
+     * Server side only
+     */
+    @Override
+    public List<Extension.Parameter> onExtensionNegotiation(ExtensionContext context, List<Extension.Parameter> requested) {
+        return requested;
+    }
+
+    /**
+     * The server has accepted the extension with these parameters
+     * @param context of the connection
+     * @param responded parameters from the server
+     */
+    @Override
+    public void onHandshakeResponse(ExtensionContext context, List<Extension.Parameter> responded) {
+        boolean resetDeflater = clientNoContextTakeover, resetInflater = false;
+
+        for (Extension.Parameter parameter : responded) {
+            if (CLIENT_NO_CONTEXT_TAKEOVER.equals(parameter.getName())) {
+                resetDeflater = true;
+            }
+            else if (SERVER_NO_CONTEXT_TAKEOVER.equals(parameter.getName())) {
+                resetInflater = true;
+            }
+        }
+        context.getProperties().put(STATE, new State(level, resetDeflater, resetInflater));
+    }
+
+    @Override
+    public Frame processOutgoing(ExtensionContext context, Frame frame) {
+        State state = (State) context.getProperties().get(STATE);
+
+        if (null == state || frame.isControlFrame()) {
+            return frame;
+        }
+        synchronized (state) {
+            boolean first = 0 != frame.getOpcode();
+
+            if (first) {
+                state.compressingOut = ! (frame.isFin() && frame.getPayloadLength() < minBytes);
+            }
+            if (! state.compressingOut) {
+                return frame;
+            }
+            byte[] payload = state.deflate(frame.getPayloadData(), frame.isFin());
+            return Frame.builder(frame).rsv1(first).payloadData(payload).payloadLength(payload.length).build();
+        }
+    }
+
+    @Override
+    public Frame processIncoming(ExtensionContext context, Frame frame) {
+        State state = (State) context.getProperties().get(STATE);
+
+        if (null == state || frame.isControlFrame()) {
+            return frame;
+        }
+        synchronized (state) {
+            if (0 != frame.getOpcode()) {
+                state.compressedIn = frame.isRsv1();
+            }
+            if (! state.compressedIn) {
+                return frame;
+            }
+            byte[] payload = state.inflate(frame.getPayloadData(), frame.isFin());
+            return Frame.builder(frame).rsv1(false).payloadData(payload).payloadLength(payload.length).build();
+        }
+    }
+
+    @Override
+    public void destroy(ExtensionContext context) {
+        State state = (State) context.getProperties().remove(STATE);
+
+        if (null != state) {
+            synchronized (state) {
+                state.deflater.end();
+                state.inflater.end();
+            }
+        }
+    }
+
+    /*
+     * Compression state of one connection
+     */
+    static class State {
+        final Deflater deflater;
+        final Inflater inflater = new Inflater(true);
+        final boolean resetDeflater, resetInflater;
+        final byte[] buffer = new byte[8192];
+        boolean compressingOut = false;
+        boolean compressedIn = false;
+
+        State(int level, boolean resetDeflater, boolean resetInflater) {
+            this.deflater = new Deflater(level, true);
+            this.resetDeflater = resetDeflater;
+            this.resetInflater = resetInflater;
+        }
+
+        /*
+         * Each frame is sync flushed. The final frame of a message loses the flush's empty block (00 00 ff ff).
+         */
+        byte[] deflate(byte[] data, boolean fin) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 2));
+            int n;
+
+            deflater.setInput(data);
+            do {
+                n = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                out.write(buffer, 0, n);
+            } while (n == buffer.length);
+
+            byte[] bytes = out.toByteArray();
+            if (fin) {
+                if (resetDeflater) {
+                    deflater.reset();
+                }
+                if (endsWithTail(bytes)) {
+                    bytes = Arrays.copyOf(bytes, bytes.length - TAIL.length);
+                }
+                if (0 == bytes.length) {
+                    bytes = new byte[] { 0 };
+                }
+            }
+            return bytes;
+        }
+
+        byte[] inflate(byte[] data, boolean fin) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(256, data.length * 4));
+
+            try {
+                inflate(data, out);
+                if (fin) {
+                    inflate(TAIL, out);
+                    if (resetInflater) {
+                        inflater.reset();
+                    }
+                }
+            } catch (DataFormatException e) {
+                throw new ProtocolException("Invalid compressed message: " + e.getMessage());
+            }
+            return out.toByteArray();
+        }
+
+        void inflate(byte[] data, ByteArrayOutputStream out) throws DataFormatException {
+            inflater.setInput(data);
+            while (true) {
+                int n = inflater.inflate(buffer);
+                if (n > 0) {
+                    out.write(buffer, 0, n);
+                }
+                else if (inflater.needsDictionary()) {
+                    throw new DataFormatException("Preset dictionary");
+                } else
+                    break;
+            }
+        }
+
+        static boolean endsWithTail(byte[] bytes) {
+            int at = bytes.length - TAIL.length;
+            return at >= 0 && bytes[at] == TAIL[0] && bytes[at + 1] == TAIL[1] && bytes[at + 2] == TAIL[2] && bytes[at + 3] == TAIL[3];
+        }
+    }
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mentalresonance.dust.http.service;
+
+import com.mentalresonance.dust.core.actors.ActorRef;
+import com.mentalresonance.dust.http.msgs.LazyStreamingHttpDataMsg;
+import com.mentalresonance.dust.http.msgs.StreamingHttpGapMsg;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.*;
+import okhttp3.sse.EventSource;
+import okhttp3.sse.EventSourceListener;
+import okio.ByteString;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Server Sent stream run by us rather than OkHttp's RealEventSource - so it can parse lazily (see {@link SseParser})
+ * and reconnect. If reconnecting, when the connection drops the id of the last event seen is sent as
+ * Last-Event-ID so the server can resume, and the server's retry: hint is the base of a capped, jittered exponential
+ * backoff. The listener sees one open and one close or failure - a reconnection is reported to client and server as
+ * a {@link StreamingHttpGapMsg}. A failure is only reported if the stream cannot be re-established within
+ * maxAttempts, or is refused (a non-retryable status).
+ * <p>
+ * Every connection attempt, including the first, is made through the circuit breaker - an open circuit is treated as
+ * a failed attempt and backed off.
+ * </p>
+ */
+@Slf4j
+class ReconnectingEventSource implements EventSource, Callback, SseParser.Handler {
+
+    final OkHttpClient client;
+    final Request request;
+    final EventSourceListener listener;
+    final StreamingHttpOptions options;
+    final ActorRef clientActor, server;
+    final CircuitBreaker breaker;
+    final String host;
+
+    volatile String lastEventId;
+    volatile ByteString lastRawId = null;
+    volatile long retryMs = -1L;
+    volatile boolean cancelled = false;
+    volatile boolean opened = false;
+    /*
+     * Admission of the current connection attempt. The first is given to us.
+     */
+    volatile long admission;
+    boolean admitted = true;
+    boolean ended = false;
+    int attempts = 0;
+    long downSince = 0L;
+    Call call = null;
+    ScheduledFuture<?> pending = null;
+
+    ReconnectingEventSource(OkHttpClient client, Request request, EventSourceListener listener, StreamingHttpOptions options,
+                            ActorRef clientActor, ActorRef server, CircuitBreaker breaker, String host, long admission) {
+        this.client = client;
+        this.request = null == request.header("Accept") ? request.newBuilder().header("Accept", "text/event-stream").build() : request;
+        this.listener = listener;
+        this.options = options;
+        this.clientActor = clientActor;
+        this.server = server;
+        this.breaker = breaker;
+        this.host = host;
+        this.admission = admission;
+        this.lastEventId = options.getLastEventId();
+    }
+
+    void connect() {
+        if (cancelled) {
+            fail(new IOException("Canceled"), null);
+            return;
+        }
+        if (null != breaker && ! admitted) {
+            admission = breaker.allow(host);
+            if (CircuitBreaker.REFUSED == admission) {
+                retry(new CircuitBreakerOpenException(host), false);
+                return;
+            }
+        }
+        admitted = false;
+        Request.Builder builder = request.newBuilder();
+        String id = lastEventId();
+        if (null != id) {
+            builder.header("Last-Event-ID", id);
+        }
+        Call next = client.newCall(builder.build());
+        synchronized (this) {
+            call = next;
+        }
+        next.enqueue(this);
+    }
+
+    @NotNull
+    @Override
+    public Request request() {
+        return request;
+    }
+
+    @Override
+    public void cancel() {
+        ScheduledFuture<?> scheduled;
+        Call current;
+
+        synchronized (this) {
+            cancelled = true;
+            scheduled = pending;
+            current = call;
+        }
+        if (null != scheduled && scheduled.cancel(false)) {
+            fail(new IOException("Canceled"), null);
+        }
+        if (null != current) {
+            current.cancel();
+        }
+    }
+
+    @Override
+    public void onFailure(@NotNull Call call, @NotNull IOException e) {
+        retry(e, true);
+    }
+
+    @Override
+    public void onResponse(@NotNull Call call, @NotNull Response response) {
+        try (response) {
+            if (! response.isSuccessful() || ! isEventStream(response)) {
+                int code = response.code();
+                if (204 == code) {
+                    reached(true);
+                    closed();
+                }
+                else if (429 == code || code >= 500) {
+                    retry(new IOException("Unexpected status " + code), true);
+                } else {
+                    reached(true);
+                    fail(null, response);
+                }
+                return;
+            }
+            connected(response);
+
+            SseParser parser = new SseParser(response.body().source(), this);
+            while (! cancelled && parser.processNextEvent()) {
+                // Events are delivered to onEvent()
+            }
+        } catch (IOException e) {
+            retry(e, false);
+            return;
+        }
+        if (cancelled) {
+            fail(new IOException("Canceled"), null);
+        }
+        else if (options.isReconnectOnClose()) {
+            retry(new IOException("Stream closed"), false);
+        } else
+            closed();
+    }
+
+    @Override
+    public void onEvent(ByteString id, String type, ByteString data) {
+        if (null != id) {
+            lastRawId = id;
+        }
+        if (options.isLazyParsing()) {
+            ((StreamingListener) listener).onEvent(new LazyStreamingHttpDataMsg(id, type, data));
+        } else
+            listener.onEvent(this, null != id ? id.utf8() : null, type, data.utf8());
+    }
+
+    /*
+     * Raw ids are only decoded when needed
+     */
+    String lastEventId() {
+        ByteString raw = lastRawId;
+        return null != raw ? raw.utf8() : lastEventId;
+    }
+
+    @Override
+    public void onRetryChange(long timeMs) {
+        retryMs = timeMs;
+    }
+
+    void connected(Response response) {
+        int tries;
+        long down;
+        boolean first;
+
+        synchronized (this) {
+            first = ! opened;
+            opened = true;
+            tries = attempts;
+            down = System.currentTimeMillis() - downSince;
+            attempts = 0;
+        }
+        reached(true);
+        if (first) {
+            listener.onOpen(this, response);
+        } else {
+            log.info("Stream {} reconnected after {}ms", request.url(), down);
+            StreamingHttpGapMsg gap = new StreamingHttpGapMsg(lastEventId(), down, tries);
+            clientActor.tell(gap, null);
+            server.tell(gap, null);
+        }
+    }
+
+    /*
+     * Connection failed (connecting true) or dropped - try again after backoff unless out of attempts
+     */
+    void retry(IOException e, boolean connecting) {
+        long delay;
+        boolean give;
+
+        /*
+         * Only failures to connect count against the host - as they do for a plain stream
+         */
+        if (connecting) {
+            reached(false);
+        }
+        synchronized (this) {
+            if (ended) {
+                return;
+            }
+            if (0 == attempts) {
+                downSince = System.currentTimeMillis();
+            }
+            give = cancelled || ! options.isReconnect() ||
+                   (options.getReconnectMaxAttempts() > 0 && attempts >= options.getReconnectMaxAttempts());
+        }
+        if (give) {
+            fail(e, null);
+            return;
+        }
+        synchronized (this) {
+            ++attempts;
+            long base = retryMs >= 0 ? retryMs : options.getReconnectMinDelayMs();
+            long backoff = Math.min(options.getReconnectMaxDelayMs(), base << Math.min(attempts - 1, 20));
+            delay = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+            pending = HttpService.scheduler.schedule(this::connect, delay, TimeUnit.MILLISECONDS);
+        }
+        log.warn("Stream {} dropped ({}) - reconnecting in {}ms", request.url(), e.getMessage(), delay);
+    }
+
+    /*
+     * Report the outcome of the current connection attempt - a cancelled attempt is neither
+     */
+    void reached(boolean ok) {
+        if (null == breaker) {
+            return;
+        }
+        if (cancelled) {
+            breaker.cancelled(host, admission);
+        }
+        else if (ok) {
+            breaker.success(host, admission);
+        } else
+            breaker.failure(host, admission);
+    }
+
+    void closed() {
+        if (end()) {
+            listener.onClosed(this);
+        }
+    }
+
+    void fail(Throwable t, Response response) {
+        if (end()) {
+            listener.onFailure(this, t, response);
+        }
+    }
+
+    synchronized boolean end() {
+        if (ended) {
+            return false;
+        }
+        ended = true;
+        return true;
+    }
+
+    static boolean isEventStream(Response response) {
+        MediaType type = response.body().contentType();
+        return null != type && "text".equals(type.type()) && "event-stream".equals(type.subtype());
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mentalresonance.dust.http.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Restores sequence order to results which complete out of order. Results are numbered from 0 as their requests
+ * are issued - one which arrives ahead of its predecessors is held until they have all been released.
+ * Not thread safe - meant to be owned by an Actor.
+ *
+ * @param <T> type of result
+ */
+public class ReorderBuffer<T> {
+
+    final TreeMap<Long, T> held = new TreeMap<>();
+    long next = 0L;
+
+    /**
+     * Constructor
+     */
+    public ReorderBuffer() {}
+
+    /**
+     * Add a result
+     * @param seq its sequence number
+     * @param result the result
+     * @return results now releasable, in sequence order - empty if seq is not next
+     */
+    public List<T> add(long seq, T result) {
+        if (seq != next) {
+            held.put(seq, result);
+            return List.of();
+        }
+        List<T> ready = new ArrayList<>(1 + Math.min(held.size(), 16));
+        ready.add(result);
+        ++next;
+        for (T following; null != (following = held.remove(next)); ++next) {
+            ready.add(following);
+        }
+        return ready;
+    }
+
+    /**
+     * @return sequence number of the next result to be released
+     */
+    public long getNext() {
+        return next;
+    }
+
+    /**
+     * @return results held waiting for a predecessor
+     */
+    public int size() {
+        return held.size();
+    }
+
+    /**
+     * Remove all held results
+     * @return them
+     */
+    public Collection<T> drain() {
+        List<T> all = new ArrayList<>(held.values());
+        held.clear();
+        return all;
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mentalresonance.dust.http.service;
+
+import okhttp3.MediaType;
+import okhttp3.MultipartBody;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.Okio;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streaming request bodies - none of these hold the whole body in memory. e.g. a large gzipped telemetry upload
+ * <pre>
+ *     RequestBody body = RequestBodies.gzip(RequestBodies.file(path, RequestBodies.JSON));
+ *     HttpService.buildRequest(url, HttpService.POST, body, Map.of("Content-Encoding", "gzip"));
+ * </pre>
+ * See also {@link ActorRequestBody} for bodies fed by an Actor.
+ */
+public class RequestBodies {
+
+    /**
+     * application/json
+     */
+    public static final MediaType JSON = MediaType.get("application/json");
+    /**
+     * application/octet-stream
+     */
+    public static final MediaType OCTET_STREAM = MediaType.get("application/octet-stream");
+
+    static final long TRANSFER_BYTES = 1024L * 1024;
+
+    RequestBodies() {}
+
+    /**
+     * Body read from a file as it is sent via FileChannel.transferTo(). Can be resent, so retries work.
+     * @param path of file
+     * @param contentType of body
+     * @return the body
+     */
+    public static RequestBody file(Path path, @Nullable MediaType contentType) {
+        return new RequestBody() {
+            @Override
+            public MediaType contentType() {
+                return contentType;
+            }
+
+            @Override
+            public long contentLength() throws IOException {
+                return Files.size(path);
+            }
+
+            @Override
+            public void writeTo(@NotNull BufferedSink sink) throws IOException {
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                    long size = channel.size();
+                    long position = 0L;
+
+                    sink.flush();
+                    while (position < size) {
+                        position += channel.transferTo(position, Math.min(TRANSFER_BYTES, size - position), sink);
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Builder of a multipart/form-data body. Add file parts with {@link #file(Path, MediaType)} bodies to stream them, e.g.
+     * <pre>
+     *     RequestBodies.multipartForm()
+     *         .addFormDataPart("batch", "42")
+     *         .addFormDataPart("data", "data.json", RequestBodies.file(path, RequestBodies.JSON))
+     *         .build();
+     * </pre>
+     * @return the builder
+     */
+    public static MultipartBody.Builder multipartForm() {
+        return new MultipartBody.Builder().setType(MultipartBody.FORM);
+    }
+
+    /**
+     * Gzip a body as it is sent. The request must carry a Content-Encoding: gzip header. As the compressed length is
+     * not known the body is sent with chunked transfer encoding.
+     * @param body to compress
+     * @return the compressed body
+     */
+    public static RequestBody gzip(RequestBody body) {
+        return new RequestBody() {
+            @Override
+            public MediaType contentType() {
+                return body.contentType();
+            }
+
+            @Override
+            public long contentLength() {
+                return -1L;
+            }
+
+            @Override
+            public boolean isOneShot() {
+                return body.isOneShot();
+            }
+
+            @Override
+            public void writeTo(@NotNull BufferedSink sink) throws IOException {
+                BufferedSink gzipSink = Okio.buffer(new GzipSink(sink));
+                body.writeTo(gzipSink);
+                gzipSink.close();
+            }
+        };
+    }
+
+    /**
+     * Send a body with chunked transfer encoding (on HTTP/1.1) by hiding its length
+     * @param body to send
+     * @return the chunked body
+     */
+    public static RequestBody chunked(RequestBody body) {
+        return new RequestBody() {
+            @Override
+            public MediaType contentType() {
+                return body.contentType();
+            }
+
+            @Override
+            public long contentLength() {
+                return -1L;
+            }
+
+            @Override
+            public boolean isOneShot() {
+                return body.isOneShot();
+            }
+
+            @Override
+            public void writeTo(@NotNull BufferedSink sink) throws IOException {
+                body.writeTo(sink);
+            }
+        };
+    }
+}
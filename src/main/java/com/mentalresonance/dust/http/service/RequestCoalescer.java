@@ -0,0 +1,167 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mentalresonance.dust.http.service;
+
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Single-flight for identical GET and HEAD requests. Requests with the same method, url and values of the key
+ * headers which arrive while one is already in flight join it rather than making their own call. The response body
+ * is read once and each waiter gets its own copy of the response. Credentials, ranges, preconditions and content
+ * negotiation (Authorization, Cookie, Range, If-*, Accept*) are always part of the key, so requests only share a
+ * response they would each have been given.
+ * Enable on a profile with {@link HttpServiceConfig#coalesce(String...)}.
+ */
+@Slf4j
+class RequestCoalescer {
+
+    /*
+     * Headers which may change the response, besides the Accept* headers
+     */
+    static final Set<String> ALWAYS_KEYED = Set.of("authorization", "cookie", "range");
+
+    final String[] keyHeaders;
+    final Map<String, Flight> flights = new ConcurrentHashMap<>();
+
+    RequestCoalescer(String[] keyHeaders) {
+        this.keyHeaders = keyHeaders;
+    }
+
+    boolean coalesces(Request request) {
+        return (HttpService.GET.equals(request.method()) || HttpService.HEAD.equals(request.method())) &&
+               null == request.body();
+    }
+
+    String key(Request request) {
+        StringBuilder key = new StringBuilder(request.method()).append(' ').append(request.url());
+
+        for (String header : request.headers().names()) {
+            if (alwaysKeyed(header)) {
+                key.append('\n').append(header.toLowerCase(Locale.ROOT)).append(':').append(request.headers(header));
+            }
+        }
+        for (String header : keyHeaders) {
+            if (! alwaysKeyed(header)) {
+                key.append('\n').append(header).append(':').append(request.headers(header));
+            }
+        }
+        return key.toString();
+    }
+
+    static boolean alwaysKeyed(String header) {
+        String name = header.toLowerCase(Locale.ROOT);
+        return ALWAYS_KEYED.contains(name) || name.startsWith("if-") || name.startsWith("accept");
+    }
+
+    /**
+     * Join the flight for the request, starting it if there is none
+     * @param request the request
+     * @param callback to receive the outcome
+     * @param start makes the actual request for the leader of the flight
+     */
+    void join(Request request, Callback callback, Consumer<Callback> start) {
+        String key = key(request);
+        Flight[] leader = new Flight[1];
+
+        flights.compute(key, (k, flight) -> {
+            if (null == flight) {
+                flight = leader[0] = new Flight(key);
+            }
+            synchronized (flight.waiters) {
+                flight.waiters.add(callback);
+            }
+            return flight;
+        });
+        if (null != leader[0]) {
+            start.accept(leader[0]);
+        }
+    }
+
+    class Flight implements Callback {
+        final String key;
+        final List<Callback> waiters = new ArrayList<>();
+
+        Flight(String key) {
+            this.key = key;
+        }
+
+        /*
+         * Have other requests joined
+         */
+        boolean shared() {
+            synchronized (waiters) {
+                return waiters.size() > 1;
+            }
+        }
+
+        /*
+         * Once removed from the map no-one else can join, so the waiters are then fixed. Joins happen inside
+         * compute() on the same key, so the map makes them visible to us after the remove.
+         */
+        List<Callback> land() {
+            flights.remove(key, this);
+            synchronized (waiters) {
+                return new ArrayList<>(waiters);
+            }
+        }
+
+        @Override
+        public void onFailure(@NotNull Call call, @NotNull IOException e) {
+            for (Callback waiter : land()) {
+                waiter.onFailure(call, e);
+            }
+        }
+
+        @Override
+        public void onResponse(@NotNull Call call, @NotNull Response response) throws IOException {
+            List<Callback> landed = land();
+
+            if (1 == landed.size()) {
+                landed.get(0).onResponse(call, response);
+                return;
+            }
+            byte[] body;
+            try (response) {
+                body = null != response.body() ? response.body().bytes() : new byte[0];
+            } catch (IOException e) {
+                for (Callback waiter : landed) {
+                    waiter.onFailure(call, e);
+                }
+                return;
+            }
+            log.trace("{} requests coalesced for {}", landed.size(), call.request().url());
+            for (Callback waiter : landed) {
+                waiter.onResponse(call, HttpService.withBody(response, body));
+            }
+        }
+    }
+}
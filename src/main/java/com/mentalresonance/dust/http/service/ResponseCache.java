@@ -0,0 +1,381 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mentalresonance.dust.http.service;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.*;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * Bounded in-memory cache of GET responses, weighted by body size with LRU eviction and a time to live taken from
+ * Cache-Control max-age or Expires. Hits are delivered straight back without touching the dispatcher.
+ * Expired entries with an ETag or Last-Modified are revalidated with a conditional request and a 304 refreshes them.
+ * Responses are keyed on the url and the request's values of the headers named in their Vary.
+ * <p>
+ * Responses marked no-store, private or no-cache, those with Vary: *, those without freshness information (unless
+ * defaultTtlMs is set) and those bodies larger than maxEntryBytes are not cached. Ranged and conditional requests
+ * bypass the cache, and requests with Authorization only store and are only served responses marked public or with
+ * an s-maxage. Set on a profile with {@link HttpServiceConfig#responseCache(ResponseCache)}.
+ * </p>
+ */
+@Slf4j
+public class ResponseCache {
+
+    @Getter
+    long maxBytes = 64L * 1024 * 1024;
+    @Getter
+    long maxEntryBytes = 1024L * 1024;
+    @Getter
+    long defaultTtlMs = 0L;
+
+    final AtomicLong hits = new AtomicLong();
+    final AtomicLong misses = new AtomicLong();
+    final AtomicLong revalidations = new AtomicLong();
+    final AtomicLong evictions = new AtomicLong();
+
+    long sizeBytes = 0L;
+    final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    /*
+     * url -> the (lower cased, sorted) header names its cached response varies on
+     */
+    final Map<String, String[]> varies = new HashMap<>();
+
+    /**
+     * Constructor
+     */
+    public ResponseCache() {}
+
+    /**
+     * @param maxBytes total body bytes held
+     * @return this
+     */
+    public ResponseCache maxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        return this;
+    }
+
+    /**
+     * @param maxEntryBytes largest body cached
+     * @return this
+     */
+    public ResponseCache maxEntryBytes(long maxEntryBytes) {
+        this.maxEntryBytes = maxEntryBytes;
+        return this;
+    }
+
+    /**
+     * @param defaultTtlMs time to live of responses without a max-age or Expires. 0 (the default) does not cache them
+     * @return this
+     */
+    public ResponseCache defaultTtlMs(long defaultTtlMs) {
+        this.defaultTtlMs = defaultTtlMs;
+        return this;
+    }
+
+    /**
+     * @return requests answered from the cache
+     */
+    public long getHits() { return hits.get(); }
+
+    /**
+     * @return cacheable requests not in the cache
+     */
+    public long getMisses() { return misses.get(); }
+
+    /**
+     * @return expired entries refreshed by a 304
+     */
+    public long getRevalidations() { return revalidations.get(); }
+
+    /**
+     * @return entries evicted to make room
+     */
+    public long getEvictions() { return evictions.get(); }
+
+    /**
+     * @return body bytes currently held
+     */
+    public synchronized long getSizeBytes() { return sizeBytes; }
+
+    /**
+     * @return entries currently held
+     */
+    public synchronized int getEntryCount() { return entries.size(); }
+
+    /**
+     * Empty the cache
+     */
+    public synchronized void clear() {
+        entries.clear();
+        varies.clear();
+        sizeBytes = 0L;
+    }
+
+    boolean caches(Request request) {
+        if (! HttpService.GET.equals(request.method()) || request.cacheControl().noCache()) {
+            return false;
+        }
+        for (String name : request.headers().names()) {
+            String lower = name.toLowerCase(Locale.ROOT);
+            if ("range".equals(lower) || lower.startsWith("if-")) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    synchronized String key(Request request) {
+        String url = request.url().toString();
+        String[] vary = varies.get(url);
+        return null == vary ? url : key(url, vary, request);
+    }
+
+    static String key(String url, String[] vary, Request request) {
+        StringBuilder key = new StringBuilder(url);
+
+        for (String name : vary) {
+            key.append('\n').append(name).append(':').append(request.headers(name));
+        }
+        return key.toString();
+    }
+
+    /**
+     * Answer the request from the cache, or make it (conditionally if we hold a stale entry with validators)
+     * storing the response if cacheable.
+     * @param client to build calls on
+     * @param request the request
+     * @param callback to receive the outcome
+     * @param execute makes the request
+     */
+    void handle(OkHttpClient client, Request request, Callback callback, BiConsumer<Request, Callback> execute) {
+        String key;
+        Entry entry;
+
+        synchronized (this) {
+            key = key(request);
+            entry = entries.get(key);
+        }
+        if (null != entry && null != request.header("Authorization") && ! entry.shared) {
+            execute.accept(request, new Storing(key, request, null, callback));
+            return;
+        }
+        if (null != entry && entry.expires > System.currentTimeMillis()) {
+            hits.incrementAndGet();
+            try {
+                callback.onResponse(client.newCall(request), entry.response(request));
+            } catch (IOException e) {
+                log.error("Callback failure for {}: {}", request.url(), e.getMessage());
+            }
+            return;
+        }
+        misses.incrementAndGet();
+
+        if (null != entry && ! entry.revalidates()) {
+            synchronized (this) {
+                if (entries.remove(key, entry)) {
+                    sizeBytes -= entry.body.length;
+                }
+            }
+        }
+        else if (null != entry) {
+            Request.Builder conditional = request.newBuilder();
+            if (null != entry.etag) {
+                conditional.header("If-None-Match", entry.etag);
+            }
+            if (null != entry.lastModified) {
+                conditional.header("If-Modified-Since", entry.lastModified);
+            }
+            execute.accept(conditional.build(), new Storing(key, request, entry, callback));
+            return;
+        }
+        execute.accept(request, new Storing(key, request, null, callback));
+    }
+
+    synchronized void put(String key, Entry entry) {
+        Entry old = entries.put(key, entry);
+        sizeBytes += entry.body.length - (null != old ? old.body.length : 0);
+
+        if (entry.vary.length > 0) {
+            varies.put(entry.url, entry.vary);
+        } else
+            varies.remove(entry.url);
+
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (sizeBytes > maxBytes && eldest.hasNext()) {
+            Entry evicted = eldest.next().getValue();
+            eldest.remove();
+            sizeBytes -= evicted.body.length;
+            evictions.incrementAndGet();
+            if (evicted.vary.length > 0) {
+                varies.remove(evicted.url, evicted.vary);
+            }
+        }
+    }
+
+    /*
+     * ms to live - or -1 if not cacheable
+     */
+    long ttl(Response response) {
+        CacheControl cc = response.cacheControl();
+
+        if (200 != response.code() || cc.noStore() || cc.isPrivate() || cc.noCache() ||
+            response.headers("Vary").stream().anyMatch(v -> v.contains("*")) ||
+            (null != response.request().header("Authorization") && ! shared(cc))) {
+            return -1L;
+        }
+        if (cc.maxAgeSeconds() >= 0) {
+            return cc.maxAgeSeconds() * 1000L;
+        }
+        Date expires = response.headers().getDate("Expires");
+        if (null != expires) {
+            Date date = response.headers().getDate("Date");
+            return Math.max(0L, expires.getTime() - (null != date ? date.getTime() : System.currentTimeMillis()));
+        }
+        return defaultTtlMs > 0L ? defaultTtlMs : -1L;
+    }
+
+    /*
+     * The stored response updated by the headers of a 304 (RFC 9111 4.3.4) - except those describing the body,
+     * which the 304 does not have, and hop-by-hop ones
+     */
+    static Response merge(Response template, Response notModified) {
+        Response.Builder merged = template.newBuilder();
+
+        for (String name : notModified.headers().names()) {
+            switch (name.toLowerCase(Locale.ROOT)) {
+                case "content-length", "content-encoding", "content-type", "transfer-encoding",
+                     "connection", "keep-alive" -> {}
+                default -> {
+                    merged.removeHeader(name);
+                    for (String value : notModified.headers(name)) {
+                        merged.addHeader(name, value);
+                    }
+                }
+            }
+        }
+        return merged.build();
+    }
+
+    /*
+     * May the response be given to requests with Authorization
+     */
+    static boolean shared(CacheControl cc) {
+        return cc.isPublic() || cc.sMaxAgeSeconds() >= 0;
+    }
+
+    static class Entry {
+        final Response template;
+        final byte[] body;
+        final long expires;
+        final String etag, lastModified;
+        final String url;
+        final String[] vary;
+        final boolean shared;
+
+        Entry(Response template, byte[] body, long expires) {
+            this.template = template;
+            this.body = body;
+            this.expires = expires;
+            this.etag = template.header("ETag");
+            this.lastModified = template.header("Last-Modified");
+            this.url = template.request().url().toString();
+            this.vary = template.headers("Vary").stream()
+                .flatMap(v -> Arrays.stream(v.split(",")))
+                .map(v -> v.trim().toLowerCase(Locale.ROOT))
+                .filter(v -> ! v.isEmpty())
+                .distinct()
+                .sorted()
+                .toArray(String[]::new);
+            this.shared = shared(template.cacheControl());
+        }
+
+        boolean revalidates() {
+            return null != etag || null != lastModified;
+        }
+
+        Response response(Request request) {
+            return HttpService.withBody(template, body).newBuilder().request(request).build();
+        }
+    }
+
+    /*
+     * Stores cacheable responses on the way back to the caller
+     */
+    class Storing implements Callback {
+        final String key;
+        final Request request;
+        final Entry stale;
+        final Callback next;
+
+        Storing(String key, Request request, Entry stale, Callback next) {
+            this.key = key;
+            this.request = request;
+            this.stale = stale;
+            this.next = next;
+        }
+
+        @Override
+        public void onFailure(@NotNull Call call, @NotNull IOException e) {
+            next.onFailure(call, e);
+        }
+
+        @Override
+        public void onResponse(@NotNull Call call, @NotNull Response response) throws IOException {
+            if (304 == response.code() && null != stale) {
+                response.close();
+                Response template = merge(stale.template, response);
+                long ttl = ttl(template);
+                Entry refreshed = new Entry(template, stale.body, System.currentTimeMillis() + Math.max(0L, ttl));
+                if (ttl < 0L) {
+                    synchronized (ResponseCache.this) {
+                        if (entries.remove(key, stale)) {
+                            sizeBytes -= stale.body.length;
+                        }
+                    }
+                } else
+                    put(key, refreshed);
+                revalidations.incrementAndGet();
+                next.onResponse(call, refreshed.response(request));
+                return;
+            }
+            long ttl = ttl(response);
+            ResponseBody body = response.body();
+            /*
+             * request() buffers up to the limit. If the body ends first we hold all of it, otherwise
+             * the caller reads the buffered part and the rest as normal.
+             */
+            if (ttl < 0L || null == body || body.source().request(maxEntryBytes + 1)) {
+                next.onResponse(call, response);
+                return;
+            }
+            byte[] bytes;
+            try (response) {
+                bytes = body.bytes();
+            }
+            Entry entry = new Entry(response, bytes, System.currentTimeMillis() + ttl);
+            put(0 == entry.vary.length ? entry.url : key(entry.url, entry.vary, request), entry);
+            next.onResponse(call, entry.response(request));
+        }
+    }
+}
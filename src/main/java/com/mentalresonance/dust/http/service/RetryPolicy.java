@@ -0,0 +1,196 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mentalresonance.dust.http.service;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Declarative retry of async requests. Failed attempts (an IOException or a 429/5xx response) are retried with
+ * exponential backoff and full jitter, honouring any Retry-After header, entirely within the HttpService - the
+ * requesting Actor only sees the final outcome.
+ * <p>
+ * By default only idempotent requests ({@link HttpService#GET}, {@link HttpService#HEAD}, {@link HttpService#PUT},
+ * {@link HttpService#DELETE}) are retried. Retries are drawn from a budget - a fraction of the requests made under
+ * the policy plus a small fixed rate - so a struggling upstream does not see its load multiplied by retries.
+ * </p>
+ * A policy applies to every request of a profile ({@link HttpServiceConfig#retryPolicy(RetryPolicy)}) or to one
+ * request by tagging it: {@code request.newBuilder().tag(RetryPolicy.class, policy).build()}.
+ */
+@Getter
+public class RetryPolicy {
+
+    int maxAttempts = 3;
+    long initialBackoffMs = 100L;
+    long maxBackoffMs = 10_000L;
+    double multiplier = 2.0;
+    boolean idempotentOnly = true;
+    double budgetRatio = 0.2;
+    double minRetriesPerSecond = 10.0;
+
+    /*
+     * Budget balance in thousandths of a retry
+     */
+    @Getter(AccessLevel.NONE)
+    final AtomicLong balance = new AtomicLong(0L);
+    @Getter(AccessLevel.NONE)
+    TokenBucket minRetries = new TokenBucket(minRetriesPerSecond, (int)minRetriesPerSecond);
+
+    /**
+     * Constructor
+     */
+    public RetryPolicy() {}
+
+    /**
+     * @param maxAttempts total attempts including the first
+     * @return this
+     */
+    public RetryPolicy maxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+        return this;
+    }
+
+    /**
+     * @param initialBackoffMs backoff before the first retry
+     * @return this
+     */
+    public RetryPolicy initialBackoffMs(long initialBackoffMs) {
+        this.initialBackoffMs = initialBackoffMs;
+        return this;
+    }
+
+    /**
+     * @param maxBackoffMs cap on backoff
+     * @return this
+     */
+    public RetryPolicy maxBackoffMs(long maxBackoffMs) {
+        this.maxBackoffMs = maxBackoffMs;
+        return this;
+    }
+
+    /**
+     * @param multiplier backoff growth per retry
+     * @return this
+     */
+    public RetryPolicy multiplier(double multiplier) {
+        this.multiplier = multiplier;
+        return this;
+    }
+
+    /**
+     * @param idempotentOnly if false requests of any method are retried
+     * @return this
+     */
+    public RetryPolicy idempotentOnly(boolean idempotentOnly) {
+        this.idempotentOnly = idempotentOnly;
+        return this;
+    }
+
+    /**
+     * Retry budget
+     * @param budgetRatio retries allowed per request made
+     * @param minRetriesPerSecond retries always allowed regardless of ratio
+     * @return this
+     */
+    public RetryPolicy budget(double budgetRatio, double minRetriesPerSecond) {
+        this.budgetRatio = budgetRatio;
+        this.minRetriesPerSecond = minRetriesPerSecond;
+        this.minRetries = new TokenBucket(minRetriesPerSecond, Math.max(1, (int)minRetriesPerSecond));
+        return this;
+    }
+
+    /**
+     * Is the request's method one we may retry (and its body one we can resend)
+     * @param request the request
+     * @return true if retries are allowed
+     */
+    public boolean retriesMethod(Request request) {
+        if (null != request.body() && request.body().isOneShot()) {
+            return false;
+        }
+        return ! idempotentOnly || switch (request.method()) {
+            case HttpService.GET, HttpService.HEAD, HttpService.PUT, HttpService.DELETE -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * Is the response status worth retrying
+     * @param code http status
+     * @return true for 429 and 5xx other than 501
+     */
+    public boolean retriesStatus(int code) {
+        return 429 == code || (code >= 500 && 501 != code);
+    }
+
+    /**
+     * Backoff before a retry - full jitter on the exponential backoff, but never less than the server's Retry-After
+     * @param retry 1 for first retry etc.
+     * @param response failed response or null
+     * @return delay in ms
+     */
+    long backoffMs(int retry, Response response) {
+        double ceiling = Math.min(maxBackoffMs, initialBackoffMs * Math.pow(multiplier, retry - 1));
+        long backoff = (long)(ThreadLocalRandom.current().nextDouble() * ceiling);
+
+        if (null != response) {
+            String retryAfter = response.header("Retry-After");
+            if (null != retryAfter) {
+                try {
+                    backoff = Math.max(backoff, Math.min(maxBackoffMs, Long.parseLong(retryAfter.trim()) * 1000L));
+                } catch (NumberFormatException ignored) {
+                    // An http date - not worth honouring precisely
+                }
+            }
+        }
+        return backoff;
+    }
+
+    /**
+     * A request has been made under the policy - add to the budget
+     */
+    void deposit() {
+        long max = (long)(budgetRatio * 1000L * 100);
+        long credit = (long)(budgetRatio * 1000L);
+        balance.getAndUpdate(b -> Math.min(max, b + credit));
+    }
+
+    /**
+     * Take a retry from the budget
+     * @return true if the retry may be made
+     */
+    boolean withdraw() {
+        if (minRetries.tryAcquire()) {
+            return true;
+        }
+        while (true) {
+            long b = balance.get();
+            if (b < 1000L) {
+                return false;
+            }
+            if (balance.compareAndSet(b, b - 1000L)) {
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,279 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mentalresonance.dust.http.service;
+
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One logical async request under a {@link RetryPolicy} and/or {@link HedgePolicy}. Each attempt is a round of
+ * one call plus any hedges. The first acceptable response of a round is delivered and the rest of the round is
+ * cancelled. Once every call of a round has failed the request is retried (after backoff) or the last outcome
+ * delivered. All timing is done on the HttpService scheduler - never on an Actor. While in progress it is held by
+ * the profile so {@link HttpService#cancel(String, Object)} can reach it between attempts.
+ */
+@Slf4j
+class RetryingCall implements Callback {
+
+    final HttpClientProfile profile;
+    final Request request;
+    final Callback callback;
+    final RetryPolicy retry;
+    final HedgePolicy hedge;
+    final String host;
+
+    int round = 0;
+    int outstanding = 0;
+    int hedges = 0;
+    boolean done = false;
+    boolean cancelled = false;
+    ScheduledFuture<?> backoff = null;
+    long roundStart;
+    final LinkedList<Call> calls = new LinkedList<>();
+    Response lastResponse = null;
+    Call lastResponseCall = null;
+    IOException lastError = null;
+    Call lastErrorCall = null;
+
+    RetryingCall(HttpClientProfile profile, Request request, Callback callback, RetryPolicy retry, HedgePolicy hedge) {
+        this.profile = profile;
+        this.request = request;
+        this.callback = callback;
+        this.retry = null != retry && retry.retriesMethod(request) ? retry : null;
+        this.hedge = null != hedge && hedge.hedges(request) ? hedge : null;
+        this.host = request.url().host();
+    }
+
+    void start() {
+        if (null != retry) {
+            retry.deposit();
+        }
+        profile.getRetrying().add(this);
+        startRound();
+    }
+
+    /*
+     * Fail at once if waiting to retry, else cancel the calls of the round - whose failures are then delivered
+     * rather than retried. false if already done.
+     */
+    boolean cancel() {
+        List<Call> current;
+        boolean fail;
+
+        synchronized (this) {
+            if (done || cancelled) {
+                return false;
+            }
+            cancelled = true;
+            current = new LinkedList<>(calls);
+            fail = null != backoff && backoff.cancel(false);
+            done = fail;
+        }
+        current.forEach(Call::cancel);
+        if (fail) {
+            failed(lastCall(), new IOException("Canceled"));
+        }
+        return true;
+    }
+
+    /*
+     * Must hold lock, or be done
+     */
+    Call lastCall() {
+        return calls.isEmpty() ? profile.getClient().newCall(request) : calls.getLast();
+    }
+
+    void startRound() {
+        Call call;
+        int thisRound;
+
+        synchronized (this) {
+            backoff = null;
+            if (cancelled) {
+                done = true;
+                call = lastCall();
+            } else
+                call = null;
+        }
+        if (null != call) {
+            failed(call, new IOException("Canceled"));
+            return;
+        }
+        synchronized (this) {
+            thisRound = ++round;
+            roundStart = System.nanoTime();
+            hedges = 0;
+            calls.clear();
+            call = newCall();
+        }
+        HttpService.attempt(profile, call, this);
+        scheduleHedge(thisRound);
+    }
+
+    /*
+     * Must hold lock
+     */
+    Call newCall() {
+        Call call = profile.getClient().newCall(request);
+        calls.add(call);
+        ++outstanding;
+        return call;
+    }
+
+    void scheduleHedge(int thisRound) {
+        if (null != hedge) {
+            HttpService.scheduler.schedule(() -> {
+                Call call = null;
+
+                synchronized (this) {
+                    if (! done && ! cancelled && round == thisRound && outstanding > 0 && hedges < hedge.getMaxHedges()) {
+                        ++hedges;
+                        call = newCall();
+                    }
+                }
+                if (null != call) {
+                    log.trace("Hedging {}", request.url());
+                    HttpService.attempt(profile, call, this);
+                    scheduleHedge(thisRound);
+                }
+            }, hedge.delayMs(host), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void onResponse(@NotNull Call call, @NotNull Response response) {
+        boolean deliver = false;
+
+        synchronized (this) {
+            --outstanding;
+            if (done) {
+                response.close();
+                return;
+            }
+            if (null == retry || ! retry.retriesStatus(response.code())) {
+                done = true;
+                deliver = true;
+            } else {
+                if (null != lastResponse) {
+                    lastResponse.close();
+                }
+                lastResponse = response;
+                lastResponseCall = call;
+            }
+        }
+        if (deliver) {
+            if (null != hedge) {
+                hedge.record(host, System.nanoTime() - roundStart);
+            }
+            cancelOthers(call);
+            deliver(call, response);
+        } else
+            roundFailed();
+    }
+
+    @Override
+    public void onFailure(@NotNull Call call, @NotNull IOException e) {
+        synchronized (this) {
+            --outstanding;
+            if (done) {
+                return;
+            }
+            lastError = e;
+            lastErrorCall = call;
+        }
+        roundFailed();
+    }
+
+    /*
+     * A call of the round failed - if it was the last one decide whether to retry
+     */
+    void roundFailed() {
+        Response response;
+        IOException error;
+        Call responseCall, errorCall;
+        long backoff = -1L;
+
+        synchronized (this) {
+            if (done || outstanding > 0) {
+                return;
+            }
+            response = lastResponse;
+            responseCall = lastResponseCall;
+            error = lastError;
+            errorCall = lastErrorCall;
+
+            if (null != retry &&
+                ! cancelled &&
+                round < retry.getMaxAttempts() &&
+                ! (null == response && error instanceof CircuitBreakerOpenException) &&
+                retry.withdraw()
+            ) {
+                backoff = retry.backoffMs(round, response);
+                if (null != response) {
+                    response.close();
+                }
+                lastResponse = null;
+                lastError = null;
+            } else
+                done = true;
+        }
+        if (backoff >= 0L) {
+            log.trace("Retrying {} in {}ms", request.url(), backoff);
+            synchronized (this) {
+                this.backoff = HttpService.scheduler.schedule(this::startRound, backoff, TimeUnit.MILLISECONDS);
+            }
+        }
+        else if (null != response) {
+            deliver(responseCall, response);
+        } else
+            failed(errorCall, error);
+    }
+
+    void failed(Call call, IOException e) {
+        profile.getRetrying().remove(this);
+        callback.onFailure(call, e);
+    }
+
+    void deliver(Call call, Response response) {
+        profile.getRetrying().remove(this);
+        try {
+            callback.onResponse(call, response);
+        } catch (IOException e) {
+            log.error("Callback failure for {}: {}", request.url(), e.getMessage());
+        }
+    }
+
+    void cancelOthers(Call winner) {
+        List<Call> others;
+
+        synchronized (this) {
+            others = new LinkedList<>(calls);
+        }
+        others.stream().filter(c -> c != winner).forEach(Call::cancel);
+    }
+}
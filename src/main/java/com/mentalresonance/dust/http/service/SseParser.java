@@ -0,0 +1,192 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mentalresonance.dust.http.service;
+
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ByteString;
+
+import java.io.IOException;
+
+/**
+ * Byte level Server Sent event parser. Fields are never decoded - data lines are moved segment by segment into the
+ * event's buffer and id is kept as bytes. Event types are interned from a small table so repeated types cost
+ * nothing. Used by lazily parsed streams (see {@link StreamingHttpOptions#lazyParsing(boolean)}) but usable on
+ * any source.
+ */
+public class SseParser {
+
+    /**
+     * Receives parsed events
+     */
+    public interface Handler {
+        /**
+         * An event
+         * @param id raw id or null
+         * @param type interned type or null
+         * @param data raw (UTF-8) data
+         */
+        void onEvent(ByteString id, String type, ByteString data);
+
+        /**
+         * The server's retry: hint
+         * @param timeMs reconnection time
+         */
+        void onRetryChange(long timeMs);
+    }
+
+    static final ByteString CRLF = ByteString.encodeUtf8("\r\n");
+    static final ByteString DATA = ByteString.encodeUtf8("data");
+    static final ByteString ID = ByteString.encodeUtf8("id");
+    static final ByteString EVENT = ByteString.encodeUtf8("event");
+    static final ByteString RETRY = ByteString.encodeUtf8("retry");
+    static final int MAX_TYPES = 32;
+
+    final BufferedSource source;
+    final Handler handler;
+    final ByteString[] typeBytes = new ByteString[MAX_TYPES];
+    final String[] types = new String[MAX_TYPES];
+    int typeCount = 0;
+
+    final Buffer data = new Buffer();
+    int dataLines = 0;
+    ByteString id = null;
+    String type = null;
+
+    /**
+     * Constructor
+     * @param source of the stream
+     * @param handler of events
+     */
+    public SseParser(BufferedSource source, Handler handler) {
+        this.source = source;
+        this.handler = handler;
+    }
+
+    /**
+     * Read up to and including the next event
+     * @return false at the end of the stream
+     * @throws IOException on read failure
+     */
+    public boolean processNextEvent() throws IOException {
+        while (true) {
+            long end = source.indexOfElement(CRLF);
+
+            if (-1L == end) {
+                return false;
+            }
+            if (0L == end) {
+                skipEol();
+                if (dispatch()) {
+                    return true;
+                }
+                continue;
+            }
+            Buffer buffer = source.getBuffer();
+
+            if (':' == buffer.getByte(0)) {
+                source.skip(end);
+            } else {
+                long colon = buffer.indexOf((byte) ':', 0L, end);
+                long length = -1L == colon ? end : colon;
+                long value = 0L;
+
+                ByteString name = source.readByteString(length);
+                if (-1L != colon) {
+                    source.skip(1L);
+                    value = end - colon - 1;
+                    if (value > 0 && ' ' == buffer.getByte(0)) {
+                        source.skip(1L);
+                        --value;
+                    }
+                }
+                field(name, value);
+            }
+            skipEol();
+        }
+    }
+
+    void field(ByteString name, long value) throws IOException {
+        if (DATA.equals(name)) {
+            if (dataLines++ > 0) {
+                data.writeByte('\n');
+            }
+            data.write(source, value);
+        }
+        else if (EVENT.equals(name)) {
+            type = value > 0 ? intern(value) : null;
+        }
+        else if (ID.equals(name)) {
+            ByteString raw = source.readByteString(value);
+            id = raw.indexOf(new byte[] { 0 }) == -1 ? raw : id;
+        }
+        else if (RETRY.equals(name)) {
+            String digits = source.readUtf8(value);
+            if (! digits.isEmpty() && digits.chars().allMatch(c -> c >= '0' && c <= '9')) {
+                try {
+                    handler.onRetryChange(Long.parseLong(digits));
+                } catch (NumberFormatException e) {
+                    // Out of range - ignored as any other bad retry
+                }
+            }
+        } else
+            source.skip(value);
+    }
+
+    /*
+     * An event with no data lines is not dispatched
+     */
+    boolean dispatch() {
+        boolean dispatched = dataLines > 0;
+
+        if (dispatched) {
+            handler.onEvent(id, type, data.readByteString());
+        }
+        data.clear();
+        dataLines = 0;
+        id = null;
+        type = null;
+        return dispatched;
+    }
+
+    String intern(long length) throws IOException {
+        for (int i = 0; i < typeCount; ++i) {
+            if (typeBytes[i].size() == length && source.rangeEquals(0L, typeBytes[i])) {
+                source.skip(length);
+                return types[i];
+            }
+        }
+        ByteString raw = source.readByteString(length);
+        String decoded = raw.utf8();
+
+        if (typeCount < MAX_TYPES) {
+            typeBytes[typeCount] = raw;
+            types[typeCount++] = decoded;
+        }
+        return decoded;
+    }
+
+    /*
+     * Line ends are \r\n, \n or \r
+     */
+    void skipEol() throws IOException {
+        if ('\r' == source.readByte() && source.request(1L) && '\n' == source.getBuffer().getByte(0)) {
+            source.skip(1L);
+        }
+    }
+}
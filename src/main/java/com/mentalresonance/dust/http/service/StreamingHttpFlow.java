@@ -0,0 +1,224 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mentalresonance.dust.http.service;
+
+import com.mentalresonance.dust.http.msgs.StreamingHttpDataMsg;
+import okhttp3.sse.EventSource;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Flow control of a Server Sent stream. Events are held in a bounded buffer and only delivered to the client
+ * while it has credit, which it grants with {@link #request(long)} as it processes them. When the buffer is full
+ * the {@link Overflow} policy decides what gives. End and failure messages follow the buffered events.
+ * <p>
+ * The client receives this with the {@link com.mentalresonance.dust.http.msgs.StreamingHttpStartMsg} and should
+ * stop the stream with {@link #cancel()} rather than cancelling the EventSource, which would not wake a blocked reader.
+ * </p>
+ */
+public class StreamingHttpFlow {
+
+    /**
+     * What to do with an event when the buffer is full
+     */
+    public enum Overflow {
+        /**
+         * Stop reading the stream until there is room - backpressure reaches the server through TCP
+         */
+        BLOCK,
+        /**
+         * Drop the oldest buffered event
+         */
+        DROP_OLDEST,
+        /**
+         * Drop the new event
+         */
+        DROP_NEWEST,
+        /**
+         * Keep only the latest buffered event of each type - an event replaces a buffered one of the same type
+         * (full or not). If full and the type is new the oldest is dropped.
+         */
+        CONFLATE_BY_TYPE
+    }
+
+    static final String DEFAULT_TYPE = "message";
+
+    final int capacity;
+    final Overflow overflow;
+    final Consumer<StreamingHttpDataMsg> sink;
+    final ArrayDeque<StreamingHttpDataMsg> queue = new ArrayDeque<>();
+    final LinkedHashMap<String, StreamingHttpDataMsg> latest = new LinkedHashMap<>();
+
+    long credit;
+    long dropped = 0L;
+    long delivered = 0L;
+    Runnable end = null;
+    volatile boolean cancelled = false;
+    volatile EventSource source = null;
+
+    StreamingHttpFlow(int capacity, Overflow overflow, long initialCredit, Consumer<StreamingHttpDataMsg> sink) {
+        this.capacity = Math.max(1, capacity);
+        this.overflow = overflow;
+        this.credit = initialCredit;
+        this.sink = sink;
+    }
+
+    /**
+     * Grant credit for more events
+     * @param n events
+     */
+    public synchronized void request(long n) {
+        if (n > 0) {
+            credit += n;
+            drain();
+        }
+    }
+
+    /**
+     * Cancel the stream, discarding buffered events
+     */
+    public void cancel() {
+        cancelled = true;
+        synchronized (this) {
+            queue.clear();
+            latest.clear();
+            notifyAll();
+        }
+        if (null != source) {
+            source.cancel();
+        }
+    }
+
+    /**
+     * @return events buffered
+     */
+    public synchronized int getDepth() {
+        return depth();
+    }
+
+    /**
+     * @return events dropped or conflated away
+     */
+    public synchronized long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * @return events delivered to the client
+     */
+    public synchronized long getDelivered() {
+        return delivered;
+    }
+
+    /**
+     * @return outstanding credit
+     */
+    public synchronized long getCredit() {
+        return credit;
+    }
+
+    /*
+     * Called on the stream's reader thread
+     */
+    synchronized void offer(StreamingHttpDataMsg msg) {
+        if (cancelled) {
+            return;
+        }
+        if (Overflow.CONFLATE_BY_TYPE == overflow) {
+            String type = null != msg.getType() ? msg.getType() : DEFAULT_TYPE;
+
+            if (null != latest.put(type, msg)) {
+                ++dropped;
+            }
+            else if (latest.size() > capacity) {
+                Iterator<StreamingHttpDataMsg> eldest = latest.values().iterator();
+                eldest.next();
+                eldest.remove();
+                ++dropped;
+            }
+        } else {
+            if (queue.size() >= capacity) {
+                switch (overflow) {
+                    case BLOCK -> {
+                        while (queue.size() >= capacity && ! cancelled) {
+                            try {
+                                wait(100L);
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                                ++dropped;
+                                return;
+                            }
+                        }
+                        if (cancelled) {
+                            return;
+                        }
+                    }
+                    case DROP_OLDEST -> {
+                        queue.poll();
+                        ++dropped;
+                    }
+                    default -> {
+                        ++dropped;
+                        return;
+                    }
+                }
+            }
+            queue.add(msg);
+        }
+        drain();
+    }
+
+    /*
+     * Run end once everything buffered has been delivered
+     */
+    synchronized void finish(Runnable end) {
+        this.end = end;
+        drain();
+    }
+
+    void drain() {
+        while (credit > 0 && depth() > 0) {
+            --credit;
+            ++delivered;
+            sink.accept(poll());
+        }
+        if (0 == depth() && null != end) {
+            Runnable r = end;
+            end = null;
+            r.run();
+        }
+        notifyAll();
+    }
+
+    StreamingHttpDataMsg poll() {
+        if (Overflow.CONFLATE_BY_TYPE == overflow) {
+            Iterator<StreamingHttpDataMsg> eldest = latest.values().iterator();
+            StreamingHttpDataMsg msg = eldest.next();
+            eldest.remove();
+            return msg;
+        }
+        return queue.poll();
+    }
+
+    int depth() {
+        return Overflow.CONFLATE_BY_TYPE == overflow ? latest.size() : queue.size();
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mentalresonance.dust.http.service;
+
+import lombok.Getter;
+
+/**
+ * Options for a Server Sent stream - batching, server accounting, flow control, reconnection and parsing - made with
+ * {@link HttpService#doRequest(String, okhttp3.Request, com.mentalresonance.dust.core.actors.ActorRef, com.mentalresonance.dust.core.actors.ActorRef, StreamingHttpOptions)}.
+ * The defaults behave as a stream made without options except that data messages sent to the server are the same
+ * instances sent to the client.
+ */
+@Getter
+public class StreamingHttpOptions {
+
+    /**
+     * What data the server Actor is sent for accounting
+     */
+    public enum Accounting {
+        /**
+         * Every data message
+         */
+        ALL,
+        /**
+         * Every sampleEvery'th data message
+         */
+        SAMPLED,
+        /**
+         * None - the server still gets start, end and failure messages
+         */
+        NONE
+    }
+
+    /**
+     * Most events in a {@link com.mentalresonance.dust.http.msgs.StreamingHttpDataBatchMsg}. 0 for no batching.
+     */
+    int batchMaxEvents = 0;
+    /**
+     * Flush a batch once its data reaches this many characters
+     */
+    int batchMaxChars = 64*1024;
+    /**
+     * Longest an event waits in a batch in ms
+     */
+    long batchLingerMs = 10L;
+    /**
+     * Server accounting
+     */
+    Accounting serverAccounting = Accounting.ALL;
+    /**
+     * Sample rate if sampling
+     */
+    int sampleEvery = 100;
+    /**
+     * Events buffered awaiting credit. 0 for no flow control.
+     */
+    int bufferSize = 0;
+    /**
+     * What gives when the buffer is full
+     */
+    StreamingHttpFlow.Overflow overflow = StreamingHttpFlow.Overflow.BLOCK;
+    /**
+     * Credit the client starts with
+     */
+    long initialCredit = 0L;
+    /**
+     * Reconnect dropped streams
+     */
+    boolean reconnect = false;
+    /**
+     * Base reconnect delay in ms if the server gives no retry: hint
+     */
+    long reconnectMinDelayMs = 1000L;
+    /**
+     * Longest reconnect delay in ms
+     */
+    long reconnectMaxDelayMs = 60_000L;
+    /**
+     * Attempts to reconnect before failing - 0 for no limit
+     */
+    int reconnectMaxAttempts = 0;
+    /**
+     * Reconnect when the server closes the stream too (the SSE spec's behavior) rather than ending it
+     */
+    boolean reconnectOnClose = false;
+    /**
+     * Last-Event-ID of the first connection - to resume a stream from an earlier session
+     */
+    String lastEventId = null;
+    /**
+     * Parse the stream into {@link com.mentalresonance.dust.http.msgs.LazyStreamingHttpDataMsg}s
+     */
+    boolean lazyParsing = false;
+
+    /**
+     * Constructor
+     */
+    public StreamingHttpOptions() {}
+
+    /**
+     * Deliver events in batches. A batch is sent when it holds maxEvents events or maxChars of data or its
+     * first event has waited lingerMs.
+     * @param maxEvents most events in a batch
+     * @param maxChars most characters of data in a batch
+     * @param lingerMs longest an event waits
+     * @return this
+     */
+    public StreamingHttpOptions batch(int maxEvents, int maxChars, long lingerMs) {
+        this.batchMaxEvents = maxEvents;
+        this.batchMaxChars = maxChars;
+        this.batchLingerMs = lingerMs;
+        return this;
+    }
+
+    /**
+     * @param serverAccounting what data the server is sent
+     * @return this
+     */
+    public StreamingHttpOptions serverAccounting(Accounting serverAccounting) {
+        this.serverAccounting = serverAccounting;
+        return this;
+    }
+
+    /**
+     * @param sampleEvery send the server every sampleEvery'th data message when SAMPLED
+     * @return this
+     */
+    public StreamingHttpOptions sampleEvery(int sampleEvery) {
+        this.sampleEvery = Math.max(1, sampleEvery);
+        return this;
+    }
+
+    /**
+     * Flow control the stream. Events are only delivered as the client grants credit on the
+     * {@link StreamingHttpFlow} it gets in the {@link com.mentalresonance.dust.http.msgs.StreamingHttpStartMsg}, with
+     * at most bufferSize events waiting. With batching a credit is one event, not one batch.
+     * @param bufferSize events buffered
+     * @param overflow what gives when the buffer is full
+     * @param initialCredit events which may be delivered before the client grants credit
+     * @return this
+     */
+    public StreamingHttpOptions flowControl(int bufferSize, StreamingHttpFlow.Overflow overflow, long initialCredit) {
+        this.bufferSize = bufferSize;
+        this.overflow = overflow;
+        this.initialCredit = initialCredit;
+        return this;
+    }
+
+    /**
+     * Reconnect the stream when it drops, resuming with Last-Event-ID. Delays grow exponentially from the server's
+     * retry: hint (or minDelayMs) up to maxDelayMs with jitter, so a fleet does not reconnect in step.
+     * The client is sent a {@link com.mentalresonance.dust.http.msgs.StreamingHttpGapMsg} on each reconnection
+     * rather than a failure.
+     * @param minDelayMs base delay if the server gives no retry: hint
+     * @param maxDelayMs longest delay
+     * @param maxAttempts attempts before giving up with a failure - 0 for no limit
+     * @return this
+     */
+    public StreamingHttpOptions reconnect(long minDelayMs, long maxDelayMs, int maxAttempts) {
+        this.reconnect = true;
+        this.reconnectMinDelayMs = Math.max(1L, minDelayMs);
+        this.reconnectMaxDelayMs = maxDelayMs;
+        this.reconnectMaxAttempts = maxAttempts;
+        return this;
+    }
+
+    /**
+     * @param reconnectOnClose reconnect when the server closes the stream
+     * @return this
+     */
+    public StreamingHttpOptions reconnectOnClose(boolean reconnectOnClose) {
+        this.reconnectOnClose = reconnectOnClose;
+        return this;
+    }
+
+    /**
+     * @param lastEventId sent as Last-Event-ID on the first connection
+     * @return this
+     */
+    public StreamingHttpOptions lastEventId(String lastEventId) {
+        this.lastEventId = lastEventId;
+        return this;
+    }
+
+    /**
+     * Parse the stream at the byte level into {@link com.mentalresonance.dust.http.msgs.LazyStreamingHttpDataMsg}s
+     * whose id and data are only decoded if read, with interned event types. Batch sizes are then counted in bytes.
+     * @param lazyParsing true to parse lazily
+     * @return this
+     */
+    public StreamingHttpOptions lazyParsing(boolean lazyParsing) {
+        this.lazyParsing = lazyParsing;
+        return this;
+    }
+
+    boolean flowControlled() {
+        return bufferSize > 0;
+    }
+
+    boolean batching() {
+        return batchMaxEvents > 1;
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mentalresonance.dust.http.service;
+
+import com.mentalresonance.dust.core.actors.ActorRef;
+import com.mentalresonance.dust.http.msgs.*;
+import okhttp3.Response;
+import okhttp3.sse.EventSource;
+import okhttp3.sse.EventSourceListener;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Server Sent event listener driven by {@link StreamingHttpOptions} - flow controlling and batching events and
+ * accounting to the server as configured.
+ */
+class StreamingListener extends EventSourceListener {
+
+    final ActorRef client, server;
+    final StreamingHttpOptions options;
+    /*
+     * Only the outcome of opening the stream is reported to the breaker
+     */
+    final CircuitBreaker breaker;
+    final String host;
+    final long admission;
+    boolean opened = false;
+    volatile boolean cancelled = false;
+
+    List<StreamingHttpDataMsg> batch = null;
+    int batchChars = 0;
+    ScheduledFuture<?> linger = null;
+    long delivered = 0L;
+    final StreamingHttpFlow flow;
+
+    StreamingListener(ActorRef client, ActorRef server, StreamingHttpOptions options, CircuitBreaker breaker, String host, long admission) {
+        this.client = client;
+        this.server = server;
+        this.options = options;
+        this.breaker = breaker;
+        this.host = host;
+        this.admission = admission;
+        this.flow = options.flowControlled() ?
+            new StreamingHttpFlow(options.getBufferSize(), options.getOverflow(), options.getInitialCredit(), this::accept) :
+            null;
+    }
+
+    /*
+     * Note - we pass the server as the sender - so a client knows who the server is and can
+     * interrupt it if needed
+     */
+    @Override
+    public void onOpen(@NotNull EventSource eventSource, @NotNull Response response) {
+        opened = true;
+        if (null != breaker) {
+            breaker.success(host, admission);
+        }
+        if (null != flow) {
+            flow.source = eventSource;
+        }
+        client.tell(new StreamingHttpStartMsg(flow), server);
+    }
+
+    @Override
+    public void onEvent(@NotNull EventSource eventSource, @Nullable String id, @Nullable String type, @NotNull String data) {
+        onEvent(new StreamingHttpDataMsg(id, type, data));
+    }
+
+    /*
+     * From the event source's own parser
+     */
+    void onEvent(StreamingHttpDataMsg msg) {
+        if (null != flow) {
+            flow.offer(msg);
+        } else
+            accept(msg);
+    }
+
+    @Override
+    public void onClosed(@NotNull EventSource eventSource) {
+        end(() -> {
+            client.tell(new StreamingHttpEndMsg(), null);
+            server.tell(new StreamingHttpEndMsg(), null);
+        });
+    }
+
+    @Override
+    public void onFailure(@NotNull EventSource eventSource, @Nullable Throwable t, @Nullable Response response) {
+        if (null != breaker && ! opened) {
+            if (cancelled) {
+                breaker.cancelled(host, admission);
+            } else
+                breaker.failure(host, admission);
+        }
+        end(() -> {
+            client.tell(new StreamingHttpFailureMsg(t, response), null);
+            server.tell(new StreamingHttpFailureMsg(t, response), null);
+        });
+    }
+
+    /*
+     * Send the end of stream once any buffered events and batch have gone
+     */
+    void end(Runnable tell) {
+        Runnable end = () -> {
+            flush();
+            tell.run();
+        };
+        if (null != flow) {
+            flow.finish(end);
+        } else
+            end.run();
+    }
+
+    void accept(StreamingHttpDataMsg msg) {
+        if (options.batching()) {
+            add(msg, msg instanceof LazyStreamingHttpDataMsg lazy ? lazy.getRawData().size() : msg.getData().length());
+        } else
+            deliver(msg);
+    }
+
+    synchronized void add(StreamingHttpDataMsg msg, int chars) {
+        if (null == batch) {
+            batch = new ArrayList<>(options.getBatchMaxEvents());
+            batchChars = 0;
+            linger = HttpService.scheduler.schedule(this::flush, options.getBatchLingerMs(), TimeUnit.MILLISECONDS);
+        }
+        batch.add(msg);
+        batchChars += chars;
+
+        if (batch.size() >= options.getBatchMaxEvents() || batchChars >= options.getBatchMaxChars()) {
+            flush();
+        }
+    }
+
+    synchronized void flush() {
+        if (null != batch) {
+            linger.cancel(false);
+            deliver(new StreamingHttpDataBatchMsg(batch));
+            batch = null;
+        }
+    }
+
+    void deliver(Serializable msg) {
+        client.tell(msg, null);
+
+        switch (options.getServerAccounting()) {
+            case ALL -> server.tell(msg, null);
+            case SAMPLED -> {
+                if (0 == ++delivered % options.getSampleEvery()) {
+                    server.tell(msg, null);
+                }
+            }
+            case NONE -> {}
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mentalresonance.dust.http.service;
+
+import lombok.Getter;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket. Implemented as the generic cell rate algorithm so the whole state is a single
+ * 'theoretical arrival time' updated by compare and set - callers never block one another.
+ */
+public class TokenBucket {
+
+    /**
+     * Nanos between permits
+     */
+    @Getter
+    final long intervalNanos;
+    /**
+     * How far ahead of schedule a permit may be taken - i.e. the burst
+     */
+    final long toleranceNanos;
+
+    final AtomicLong tat;
+
+    /**
+     * Constructor
+     * @param permitsPerSecond sustained rate
+     * @param burst number of permits which may be taken at once
+     */
+    public TokenBucket(double permitsPerSecond, int burst) {
+        if (permitsPerSecond <= 0.0 || burst < 1) {
+            throw new IllegalArgumentException("Rate and burst must be positive");
+        }
+        intervalNanos = (long)(1_000_000_000L / permitsPerSecond);
+        toleranceNanos = intervalNanos * (burst - 1);
+        tat = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * Reserve a permit.
+     * @return nanos the caller must wait before using the permit - 0 if it may be used now
+     */
+    public long reserve() {
+        long now = System.nanoTime();
+
+        while (true) {
+            long current = tat.get();
+            long start = Math.max(current, now);
+
+            if (tat.compareAndSet(current, start + intervalNanos)) {
+                return Math.max(0L, start - now - toleranceNanos);
+            }
+        }
+    }
+
+    /**
+     * Take a permit if one is available now
+     * @return true if taken
+     */
+    public boolean tryAcquire() {
+        long now = System.nanoTime();
+
+        while (true) {
+            long current = tat.get();
+            long start = Math.max(current, now);
+
+            if (start - now > toleranceNanos) {
+                return false;
+            }
+            if (tat.compareAndSet(current, start + intervalNanos)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * A full bucket is in the state of a new one - so may be discarded and recreated when next needed
+     * @return true if a whole burst is available
+     */
+    public boolean isFull() {
+        return tat.get() <= System.nanoTime();
+    }
+}
@@ -17,7 +17,11 @@
 
 package com.mentalresonance.dust.http.service;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.List;
 import javax.websocket.*;
 
 /**
@@ -28,17 +32,22 @@ public class WebsocketClientEndpoint {
 
     Session userSession = null;
     private WebsocketHandler websocketHandler;
+    /*
+     * Messages being assembled from parts
+     */
+    StringBuilder text = null;
+    ByteArrayOutputStream binary = null;
 
     /**
-     * Constructor
+     * Constructor - connecting synchronously through the default {@link WebsocketService} container.
+     * {@link WebsocketConnector} connects in the background and can reconnect.
      * @param endpointURI web socket endpoint
      * @param handler callback
      */
     public WebsocketClientEndpoint(URI endpointURI, WebsocketHandler handler) {
         try {
             websocketHandler = handler;
-            WebSocketContainer container = ContainerProvider.getWebSocketContainer();
-            container.connectToServer(this, endpointURI);
+            WebsocketService.getContainer(null).connectToServer(this, endpointURI);
         }
         catch (Exception e) {
             e.printStackTrace();
@@ -46,6 +55,44 @@ public class WebsocketClientEndpoint {
         }
     }
 
+    /**
+     * Constructor - the endpoint is connected by passing it to a container's connectToServer(). It may be connected
+     * again once closed.
+     * @param handler callback
+     */
+    public WebsocketClientEndpoint(WebsocketHandler handler) {
+        websocketHandler = handler;
+    }
+
+    /**
+     * Connect through container with the given extensions - e.g. {@link PerMessageDeflateExtension}. Annotated
+     * endpoints cannot carry extensions so the endpoint is adapted to a programmatic one.
+     * @param container to connect through
+     * @param uri of the websocket server
+     * @param extensions to offer
+     * @return the session
+     * @throws DeploymentException if the endpoint cannot be deployed
+     * @throws IOException if the connection fails
+     */
+    public Session connect(WebSocketContainer container, URI uri, List<Extension> extensions) throws DeploymentException, IOException {
+        ClientEndpointConfig config = ClientEndpointConfig.Builder.create().extensions(extensions).build();
+
+        return container.connectToServer(new Endpoint() {
+            @Override
+            public void onOpen(Session session, EndpointConfig endpointConfig) {
+                session.addMessageHandler(String.class, (MessageHandler.Partial<String>) WebsocketClientEndpoint.this::onMessage);
+                session.addMessageHandler(ByteBuffer.class, (MessageHandler.Partial<ByteBuffer>) WebsocketClientEndpoint.this::onMessage);
+                session.addMessageHandler(PongMessage.class, (MessageHandler.Whole<PongMessage>) WebsocketClientEndpoint.this::onPong);
+                WebsocketClientEndpoint.this.onOpen(session);
+            }
+
+            @Override
+            public void onClose(Session session, CloseReason closeReason) {
+                WebsocketClientEndpoint.this.onClose(session, closeReason);
+            }
+        }, config, uri);
+    }
+
     /**
      * Callback hook for Connection open events.
      *
@@ -54,6 +101,8 @@ public class WebsocketClientEndpoint {
     @OnOpen
     public void onOpen(Session userSession) {
         this.userSession = userSession;
+        text = null;
+        binary = null;
         websocketHandler.onOpen(userSession);
     }
     /**
@@ -68,22 +117,121 @@ public class WebsocketClientEndpoint {
         websocketHandler.onClose(userSession, reason);
     }
     /**
-     * Callback hook for Message Events. This method will be invoked when a client send a message.
+     * Callback hook for Message Events. This method will be invoked when a client send a message. Messages
+     * arriving in parts are assembled unless the handler wants {@link WebsocketHandler#partialMessages()}.
      *
-     * @param message The text message
+     * @param part The text message or part of it
+     * @param last true if the whole message or its last part
      */
     @OnMessage
-    public void onMessage(String message) {
+    public void onMessage(String part, boolean last) {
+        if (websocketHandler.partialMessages()) {
+            websocketHandler.onMessagePart(part, last);
+        }
+        else if (null == text) {
+            if (last) {
+                websocketHandler.onMessage(part);
+            } else
+                text = new StringBuilder(part);
+        } else {
+            text.append(part);
+            if (last) {
+                String message = text.toString();
+                text = null;
+                websocketHandler.onMessage(message);
+            }
+        }
+    }
+    /**
+     * Callback hook for binary Message Events. Assembled as for text.
+     *
+     * @param part The binary message or part of it
+     * @param last true if the whole message or its last part
+     */
+    @OnMessage
+    public void onMessage(ByteBuffer part, boolean last) {
+        if (websocketHandler.partialMessages()) {
+            websocketHandler.onBinaryMessagePart(part, last);
+        }
+        else if (null == binary) {
+            if (last) {
+                websocketHandler.onBinaryMessage(part);
+            } else {
+                binary = new ByteArrayOutputStream(Math.max(1024, 2 * part.remaining()));
+                append(part);
+            }
+        } else {
+            append(part);
+            if (last) {
+                ByteBuffer message = ByteBuffer.wrap(binary.toByteArray());
+                binary = null;
+                websocketHandler.onBinaryMessage(message);
+            }
+        }
+    }
 
-        websocketHandler.onMessage(message);
+    /**
+     * Callback hook for pongs
+     *
+     * @param pong the pong
+     */
+    @OnMessage
+    public void onPong(PongMessage pong) {
+        websocketHandler.onPong(pong.getApplicationData());
+    }
+
+    void append(ByteBuffer part) {
+        if (part.hasArray()) {
+            binary.write(part.array(), part.arrayOffset() + part.position(), part.remaining());
+        } else {
+            byte[] bytes = new byte[part.remaining()];
+            part.get(bytes);
+            binary.write(bytes, 0, bytes.length);
+        }
     }
+
     /**
-     * Send a message asynchronously.
+     * @return the open session or null if not yet open
+     */
+    public Session getSession() {
+        return userSession;
+    }
+    /**
+     * Send a message asynchronously. Unbounded and unreported - {@link WebsocketWriter} bounds sends and reports
+     * their outcome.
      *
      * @param message to be sent
      */
     public void sendMessage(String message) {
         userSession.getAsyncRemote().sendText(message);
     }
+    /**
+     * Send a binary message asynchronously. The buffer must not be changed until it has been sent.
+     *
+     * @param message to be sent - from its position to its limit
+     */
+    public void sendMessage(ByteBuffer message) {
+        userSession.getAsyncRemote().sendBinary(message);
+    }
+    /**
+     * Send part of a text message. Blocks until sent.
+     *
+     * @param part to be sent
+     * @param last true if the final part
+     * @throws IOException on failure
+     */
+    public void sendMessagePart(String part, boolean last) throws IOException {
+        userSession.getBasicRemote().sendText(part, last);
+    }
+    /**
+     * Send part of a binary message. Blocks until sent.
+     *
+     * @param part to be sent
+     * @param last true if the final part
+     * @throws IOException on failure
+     */
+    public void sendMessagePart(ByteBuffer part, boolean last) throws IOException {
+        userSession.getBasicRemote().sendBinary(part, last);
+    }
 }
 
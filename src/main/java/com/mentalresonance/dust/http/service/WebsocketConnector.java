@@ -0,0 +1,275 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mentalresonance.dust.http.service;
+
+import com.mentalresonance.dust.core.actors.ActorRef;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.websocket.CloseReason;
+import javax.websocket.Extension;
+import javax.websocket.Session;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Owns a websocket connection - connecting in the background through a shared {@link WebsocketService} container
+ * and, if the options ask, reconnecting with capped, jittered exponential backoff when it fails or drops.
+ * Subscriptions are sent on every open, before the handler hears of it, so a reconnected feed carries on where it
+ * was. Events are passed on to the handler - a drop is seen as onClose() followed, on reconnection, by onOpen().
+ * If the connection cannot be (re)made the handler's {@link WebsocketHandler#onConnectFailed(Throwable)} is called.
+ * Sends made before the first open are held in the writer's queue until it opens, and fail if it never does.
+ * <p>
+ * The options may also offer permessage-deflate and keep a {@link WebsocketHeartbeat} on the connection.
+ * </p>
+ */
+@Slf4j
+public class WebsocketConnector implements WebsocketHandler {
+
+    final URI uri;
+    final WebsocketHandler handler;
+    final WebsocketOptions options;
+    /**
+     * The endpoint - reused by every connection
+     */
+    @Getter
+    final WebsocketClientEndpoint endpoint;
+    /**
+     * Outbound messages
+     */
+    @Getter
+    final WebsocketWriter writer;
+    final List<String> subscriptions = new CopyOnWriteArrayList<>();
+    final List<Extension> extensions;
+    /**
+     * Heartbeat - null if none
+     */
+    @Getter
+    final WebsocketHeartbeat heartbeat;
+
+    volatile boolean closed = false;
+    int attempts = 0;
+    ScheduledFuture<?> pending = null;
+
+    /**
+     * Constructor
+     * @param uri of the websocket server
+     * @param handler of websocket events
+     * @param target told the outcome of sends - may be null
+     * @param options of the connection
+     */
+    public WebsocketConnector(URI uri, WebsocketHandler handler, ActorRef target, WebsocketOptions options) {
+        this.uri = uri;
+        this.handler = handler;
+        this.options = options;
+        this.endpoint = new WebsocketClientEndpoint(this);
+        this.writer = new WebsocketWriter(endpoint::getSession, target, options);
+        this.writer.hold(true);
+        this.extensions = options.isDeflate() ?
+            List.of(new PerMessageDeflateExtension(
+                options.getDeflateLevel(), options.getDeflateMinBytes(),
+                options.isClientNoContextTakeover(), options.isServerNoContextTakeover()
+            )) :
+            List.of();
+        this.heartbeat = options.getHeartbeatIntervalMs() > 0 ?
+            new WebsocketHeartbeat(options.getHeartbeatIntervalMs(), options.getHeartbeatTimeoutMs()) :
+            null;
+    }
+
+    /**
+     * Connect in the background. Returns at once.
+     */
+    public void connect() {
+        if (closed) {
+            return;
+        }
+        WebsocketService.connectors.execute(() -> {
+            try {
+                endpoint.connect(WebsocketService.getContainer(options.getContainer()), uri, extensions);
+            } catch (Exception e) {
+                retry(e);
+            }
+        });
+    }
+
+    /**
+     * Send msg now, if open, and again after every reconnection
+     * @param msg subscription message
+     */
+    public void subscribe(String msg) {
+        subscriptions.add(msg);
+        if (isOpen()) {
+            writer.send(msg, null);
+        }
+    }
+
+    /**
+     * Stop replaying a subscription - any unsubscribe message is for the caller to send
+     * @param msg as passed to subscribe()
+     */
+    public void unsubscribe(String msg) {
+        subscriptions.remove(msg);
+    }
+
+    /**
+     * @return true if connected
+     */
+    public boolean isOpen() {
+        Session session = endpoint.getSession();
+        return null != session && session.isOpen();
+    }
+
+    /**
+     * @return failed attempts since the last successful connection
+     */
+    public synchronized int getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * Close the connection for good
+     */
+    public void close() {
+        ScheduledFuture<?> scheduled;
+
+        synchronized (this) {
+            closed = true;
+            scheduled = pending;
+        }
+        if (null != scheduled) {
+            scheduled.cancel(false);
+        }
+        if (null != heartbeat) {
+            heartbeat.stop();
+        }
+        close(endpoint.getSession());
+        writer.hold(false);
+    }
+
+    void close(Session session) {
+        if (null != session && session.isOpen()) {
+            try {
+                session.close();
+            } catch (IOException e) {
+                log.warn("Closing websocket {}: {}", uri, e.getMessage());
+            }
+        }
+    }
+
+    /*
+     * Connection failed or dropped - try again after backoff unless closed or out of attempts
+     */
+    void retry(Throwable t) {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            if (! options.isReconnect() ||
+                (options.getReconnectMaxAttempts() > 0 && attempts >= options.getReconnectMaxAttempts())) {
+                closed = true;
+            } else {
+                ++attempts;
+                long backoff = Math.min(
+                    options.getReconnectMaxDelayMs(),
+                    options.getReconnectMinDelayMs() << Math.min(attempts - 1, 20)
+                );
+                long delay = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+                pending = HttpService.scheduler.schedule(this::connect, delay, TimeUnit.MILLISECONDS);
+                log.warn("Websocket {} {} - reconnecting in {}ms", uri, null != t ? t.getMessage() : "closed", delay);
+                return;
+            }
+        }
+        writer.hold(false);
+        handler.onConnectFailed(null != t ? t : new IOException("Websocket closed"));
+    }
+
+    @Override
+    public void onOpen(Session userSession) {
+        /*
+         * Closed while connecting
+         */
+        if (closed) {
+            close(userSession);
+            return;
+        }
+        synchronized (this) {
+            attempts = 0;
+        }
+        subscriptions.forEach(msg -> writer.send(msg, null));
+        writer.hold(false);
+        if (null != heartbeat) {
+            heartbeat.start(userSession);
+        }
+        handler.onOpen(userSession);
+    }
+
+    @Override
+    public void onClose(Session userSession, CloseReason reason) {
+        if (null != heartbeat) {
+            heartbeat.stop();
+        }
+        handler.onClose(userSession, reason);
+        if (! closed && options.isReconnect()) {
+            retry(new IOException("Closed " + reason.getCloseCode().getCode() + " " + reason.getReasonPhrase()));
+        }
+    }
+
+    @Override
+    public void onMessage(String message) {
+        handler.onMessage(message);
+    }
+
+    @Override
+    public void onBinaryMessage(ByteBuffer message) {
+        handler.onBinaryMessage(message);
+    }
+
+    @Override
+    public boolean partialMessages() {
+        return handler.partialMessages();
+    }
+
+    @Override
+    public void onMessagePart(String part, boolean last) {
+        handler.onMessagePart(part, last);
+    }
+
+    @Override
+    public void onBinaryMessagePart(ByteBuffer part, boolean last) {
+        handler.onBinaryMessagePart(part, last);
+    }
+
+    @Override
+    public void onPong(ByteBuffer payload) {
+        if (null != heartbeat) {
+            heartbeat.pong(payload);
+        }
+        handler.onPong(payload);
+    }
+
+    @Override
+    public void onConnectFailed(Throwable cause) {
+        handler.onConnectFailed(cause);
+    }
+}
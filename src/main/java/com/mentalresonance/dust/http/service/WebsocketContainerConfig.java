@@ -0,0 +1,194 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mentalresonance.dust.http.service;
+
+import lombok.Getter;
+import org.glassfish.tyrus.client.ClientManager;
+import org.glassfish.tyrus.client.ClientProperties;
+import org.glassfish.tyrus.client.ThreadPoolConfig;
+
+/**
+ * Configuration of a named {@link WebsocketService} container. Setters are fluent, e.g.
+ * <pre>
+ *     WebsocketService.register("feeds", new WebsocketContainerConfig()
+ *         .workerThreads(4, 32)
+ *         .incomingBufferSize(1024*1024));
+ * </pre>
+ * A value of 0 leaves Tyrus's default in place.
+ */
+@Getter
+public class WebsocketContainerConfig {
+
+    /**
+     * Share one transport (selector and worker threads) between all connections rather than start one per
+     * connection. The first shared connection made sizes the transport's threads.
+     */
+    boolean sharedTransport = true;
+    /**
+     * Seconds an unused shared transport lives before it is stopped
+     */
+    int sharedTransportIdleSeconds = 30;
+    /**
+     * Core worker threads
+     */
+    int workerCorePoolSize = 0;
+    /**
+     * Maximum worker threads
+     */
+    int workerMaxPoolSize = 0;
+    /**
+     * Size of the buffer incoming frames are read into - so the largest frame
+     */
+    int incomingBufferSize = 0;
+    /**
+     * Largest text message assembled by the container
+     */
+    int maxTextMessageBufferSize = 0;
+    /**
+     * Largest binary message assembled by the container
+     */
+    int maxBinaryMessageBufferSize = 0;
+    /**
+     * Timeout of the opening handshake in ms
+     */
+    long handshakeTimeoutMs = 0L;
+    /**
+     * Timeout of an async send in ms
+     */
+    long asyncSendTimeoutMs = 0L;
+    /**
+     * Idle time in ms after which a session is closed
+     */
+    long maxSessionIdleTimeoutMs = 0L;
+
+    /**
+     * Constructor
+     */
+    public WebsocketContainerConfig() {}
+
+    /**
+     * @param sharedTransport share one transport between all connections
+     * @param idleSeconds before an unused shared transport is stopped
+     * @return this
+     */
+    public WebsocketContainerConfig sharedTransport(boolean sharedTransport, int idleSeconds) {
+        this.sharedTransport = sharedTransport;
+        this.sharedTransportIdleSeconds = idleSeconds;
+        return this;
+    }
+
+    /**
+     * @param core worker threads
+     * @param max worker threads
+     * @return this
+     */
+    public WebsocketContainerConfig workerThreads(int core, int max) {
+        this.workerCorePoolSize = core;
+        this.workerMaxPoolSize = max;
+        return this;
+    }
+
+    /**
+     * @param incomingBufferSize largest incoming frame in bytes
+     * @return this
+     */
+    public WebsocketContainerConfig incomingBufferSize(int incomingBufferSize) {
+        this.incomingBufferSize = incomingBufferSize;
+        return this;
+    }
+
+    /**
+     * @param maxText largest assembled text message in bytes
+     * @param maxBinary largest assembled binary message in bytes
+     * @return this
+     */
+    public WebsocketContainerConfig maxMessageBufferSizes(int maxText, int maxBinary) {
+        this.maxTextMessageBufferSize = maxText;
+        this.maxBinaryMessageBufferSize = maxBinary;
+        return this;
+    }
+
+    /**
+     * @param handshakeTimeoutMs timeout of the opening handshake in ms
+     * @return this
+     */
+    public WebsocketContainerConfig handshakeTimeoutMs(long handshakeTimeoutMs) {
+        this.handshakeTimeoutMs = handshakeTimeoutMs;
+        return this;
+    }
+
+    /**
+     * @param asyncSendTimeoutMs timeout of an async send in ms
+     * @return this
+     */
+    public WebsocketContainerConfig asyncSendTimeoutMs(long asyncSendTimeoutMs) {
+        this.asyncSendTimeoutMs = asyncSendTimeoutMs;
+        return this;
+    }
+
+    /**
+     * @param maxSessionIdleTimeoutMs idle time in ms after which a session is closed
+     * @return this
+     */
+    public WebsocketContainerConfig maxSessionIdleTimeoutMs(long maxSessionIdleTimeoutMs) {
+        this.maxSessionIdleTimeoutMs = maxSessionIdleTimeoutMs;
+        return this;
+    }
+
+    /**
+     * Build the container described by this config
+     * @return the container
+     */
+    ClientManager buildContainer() {
+        ClientManager container = ClientManager.createClient();
+
+        if (sharedTransport) {
+            container.getProperties().put(ClientProperties.SHARED_CONTAINER, true);
+            container.getProperties().put(ClientProperties.SHARED_CONTAINER_IDLE_TIMEOUT, sharedTransportIdleSeconds);
+        }
+        if (workerCorePoolSize > 0 || workerMaxPoolSize > 0) {
+            ThreadPoolConfig pool = ThreadPoolConfig.defaultConfig().setPoolName("dust-websocket-worker").setDaemon(true);
+            if (workerMaxPoolSize > 0) {
+                pool.setMaxPoolSize(workerMaxPoolSize);
+            }
+            if (workerCorePoolSize > 0) {
+                pool.setCorePoolSize(Math.min(workerCorePoolSize, pool.getMaxPoolSize()));
+            }
+            container.getProperties().put(ClientProperties.WORKER_THREAD_POOL_CONFIG, pool);
+        }
+        if (incomingBufferSize > 0) {
+            container.getProperties().put(ClientProperties.INCOMING_BUFFER_SIZE, incomingBufferSize);
+        }
+        if (handshakeTimeoutMs > 0) {
+            container.getProperties().put(ClientProperties.HANDSHAKE_TIMEOUT, handshakeTimeoutMs);
+        }
+        if (maxTextMessageBufferSize > 0) {
+            container.setDefaultMaxTextMessageBufferSize(maxTextMessageBufferSize);
+        }
+        if (maxBinaryMessageBufferSize > 0) {
+            container.setDefaultMaxBinaryMessageBufferSize(maxBinaryMessageBufferSize);
+        }
+        if (asyncSendTimeoutMs > 0) {
+            container.setAsyncSendTimeout(asyncSendTimeoutMs);
+        }
+        if (maxSessionIdleTimeoutMs > 0) {
+            container.setDefaultMaxSessionIdleTimeout(maxSessionIdleTimeoutMs);
+        }
+        return container;
+    }
+}
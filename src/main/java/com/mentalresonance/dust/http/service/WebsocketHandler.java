@@ -19,6 +19,7 @@ package com.mentalresonance.dust.http.service;
 
 import javax.websocket.CloseReason;
 import javax.websocket.Session;
+import java.nio.ByteBuffer;
 
 /**
  * Interface all Websocket callbacks must implement
@@ -41,4 +42,40 @@ public interface WebsocketHandler
      * @param message the message
      */
     void onMessage(String message);
+    /**
+     * Called on a binary message
+     * @param message the message - positioned at its start
+     */
+    default void onBinaryMessage(ByteBuffer message) {}
+    /**
+     * If true large or fragmented messages are delivered in parts, as they arrive, to {@link #onMessagePart} and
+     * {@link #onBinaryMessagePart} instead of being assembled and passed to {@link #onMessage} and
+     * {@link #onBinaryMessage}.
+     * @return false by default
+     */
+    default boolean partialMessages() {
+        return false;
+    }
+    /**
+     * Called on part of a text message if {@link #partialMessages()}
+     * @param part of the message
+     * @param last true if the final part
+     */
+    default void onMessagePart(String part, boolean last) {}
+    /**
+     * Called on part of a binary message if {@link #partialMessages()}
+     * @param part of the message
+     * @param last true if the final part
+     */
+    default void onBinaryMessagePart(ByteBuffer part, boolean last) {}
+    /**
+     * Called when a connection could not be made, or remade, and no more attempts will be
+     * @param cause of the last failure
+     */
+    default void onConnectFailed(Throwable cause) {}
+    /**
+     * Called on a pong
+     * @param payload of the pong
+     */
+    default void onPong(ByteBuffer payload) {}
 }
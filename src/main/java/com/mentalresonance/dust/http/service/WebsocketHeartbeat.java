@@ -0,0 +1,168 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mentalresonance.dust.http.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.websocket.CloseReason;
+import javax.websocket.Session;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pings an open websocket every intervalMs and times the pongs. A ping unanswered for timeoutMs means the
+ * connection is dead - half open sockets otherwise go unnoticed until TCP gives up - and it is closed, which lets
+ * a {@link WebsocketConnector} reconnect. Only one ping is outstanding at a time.
+ */
+@Slf4j
+public class WebsocketHeartbeat {
+
+    final long intervalMs;
+    final long timeoutNs;
+
+    Session session = null;
+    ScheduledFuture<?> task = null;
+    long outstanding = 0L;
+    long lastRttNs = -1L;
+    double avgRttNs = -1.0;
+    long pongs = 0L;
+    long timeouts = 0L;
+
+    /**
+     * Constructor
+     * @param intervalMs between pings
+     * @param timeoutMs before an unanswered ping means the connection is dead
+     */
+    public WebsocketHeartbeat(long intervalMs, long timeoutMs) {
+        this.intervalMs = intervalMs;
+        this.timeoutNs = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+    }
+
+    /**
+     * @return round trip time of the last pong in ms - -1 if none yet
+     */
+    public synchronized double getLastRttMs() {
+        return lastRttNs < 0 ? -1.0 : lastRttNs / 1e6;
+    }
+
+    /**
+     * @return moving average of round trip times in ms - -1 if none yet
+     */
+    public synchronized double getAverageRttMs() {
+        return avgRttNs < 0 ? -1.0 : avgRttNs / 1e6;
+    }
+
+    /**
+     * @return pongs received
+     */
+    public synchronized long getPongs() {
+        return pongs;
+    }
+
+    /**
+     * @return connections found dead
+     */
+    public synchronized long getTimeouts() {
+        return timeouts;
+    }
+
+    /**
+     * Start pinging a newly opened session
+     * @param session the session
+     */
+    public synchronized void start(Session session) {
+        stop();
+        this.session = session;
+        outstanding = 0L;
+        task = HttpService.scheduler.scheduleAtFixedRate(this::beat, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop pinging
+     */
+    public synchronized void stop() {
+        if (null != task) {
+            task.cancel(false);
+            task = null;
+        }
+    }
+
+    /**
+     * A pong has arrived
+     * @param payload of the pong - ours carry the time the ping was sent
+     */
+    public void pong(ByteBuffer payload) {
+        if (8 != payload.remaining()) {
+            return;
+        }
+        long sent = payload.getLong(payload.position());
+
+        synchronized (this) {
+            if (sent == outstanding) {
+                lastRttNs = System.nanoTime() - sent;
+                avgRttNs = avgRttNs < 0 ? lastRttNs : 0.8 * avgRttNs + 0.2 * lastRttNs;
+                outstanding = 0L;
+                ++pongs;
+            }
+        }
+    }
+
+    void beat() {
+        Session current;
+        long now = System.nanoTime();
+        boolean dead = false;
+
+        synchronized (this) {
+            current = session;
+            if (null == current || ! current.isOpen()) {
+                stop();
+                return;
+            }
+            if (0L != outstanding) {
+                if (now - outstanding < timeoutNs) {
+                    return;
+                }
+                dead = true;
+                ++timeouts;
+                stop();
+            } else
+                outstanding = now;
+        }
+        if (dead) {
+            log.warn("Websocket {} missed heartbeat - closing", current.getRequestURI());
+            /*
+             * Closing a dead socket may block - so not on the scheduler
+             */
+            WebsocketService.connectors.execute(() -> {
+                try {
+                    current.close(new CloseReason(CloseReason.CloseCodes.GOING_AWAY, "Heartbeat timeout"));
+                } catch (IOException e) {
+                    log.warn("Closing websocket: {}", e.getMessage());
+                }
+            });
+            return;
+        }
+        try {
+            current.getAsyncRemote().sendPing(ByteBuffer.allocate(8).putLong(0, now));
+        } catch (IOException | RuntimeException e) {
+            log.warn("Websocket ping failed: {}", e.getMessage());
+        }
+    }
+}
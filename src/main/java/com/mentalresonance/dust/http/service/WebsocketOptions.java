@@ -0,0 +1,231 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mentalresonance.dust.http.service;
+
+import lombok.Getter;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.zip.Deflater;
+
+/**
+ * Options of a websocket client. By default callbacks are made on the websocket's own threads and a lost
+ * connection is not remade.
+ */
+@Getter
+public class WebsocketOptions {
+
+    /**
+     * What to do with an inbound message when the mailbox already holds inboundCapacity of them
+     */
+    public enum Overflow {
+        /**
+         * Drop the message
+         */
+        DROP_NEWEST,
+        /**
+         * Stop reading the socket until there is room - backpressure reaches the server through TCP
+         */
+        BLOCK,
+        /**
+         * Close the connection (1013 Try Again Later)
+         */
+        CLOSE
+    }
+
+    /**
+     * Deliver events as messages to the Actor's mailbox rather than as callbacks on websocket threads
+     */
+    boolean mailbox = false;
+    /**
+     * Most unprocessed inbound messages in the mailbox
+     */
+    int inboundCapacity = 1024;
+    /**
+     * What gives when the mailbox is full
+     */
+    Overflow overflow = Overflow.BLOCK;
+    /**
+     * Most async sends outstanding at once
+     */
+    int maxInFlightSends = 64;
+    /**
+     * Most sends waiting for one of those - beyond this sends fail
+     */
+    int maxQueuedSends = 8192;
+    /**
+     * Most queued text messages coalesced into one frame
+     */
+    int coalesceMax = 1;
+    /**
+     * Joins queued text messages into one. null for no coalescing.
+     */
+    Function<List<String>, String> textJoiner = null;
+    /**
+     * Name of the {@link WebsocketService} container to connect through
+     */
+    String container = WebsocketService.DEFAULT_CONTAINER;
+    /**
+     * Reconnect when the connection fails or drops
+     */
+    boolean reconnect = false;
+    /**
+     * First reconnect delay in ms - doubling on each failure
+     */
+    long reconnectMinDelayMs = 500L;
+    /**
+     * Longest reconnect delay in ms
+     */
+    long reconnectMaxDelayMs = 30_000L;
+    /**
+     * Consecutive failed attempts before giving up. 0 means never give up.
+     */
+    int reconnectMaxAttempts = 0;
+    /**
+     * Offer permessage-deflate
+     */
+    boolean deflate = false;
+    /**
+     * Compression level
+     */
+    int deflateLevel = Deflater.DEFAULT_COMPRESSION;
+    /**
+     * Smallest outbound message compressed
+     */
+    int deflateMinBytes = 256;
+    /**
+     * Reset our compressor after each message
+     */
+    boolean clientNoContextTakeover = false;
+    /**
+     * Ask the server to reset its compressor after each message
+     */
+    boolean serverNoContextTakeover = false;
+    /**
+     * Ms between heartbeat pings. 0 for no heartbeat.
+     */
+    long heartbeatIntervalMs = 0L;
+    /**
+     * Ms a ping may go unanswered before the connection is closed as dead
+     */
+    long heartbeatTimeoutMs = 0L;
+
+    /**
+     * Constructor
+     */
+    public WebsocketOptions() {}
+
+    /**
+     * Deliver events to the Actor's mailbox as {@link com.mentalresonance.dust.http.msgs.WebsocketOpenMsg},
+     * {@link com.mentalresonance.dust.http.msgs.WebsocketTextMsg}, {@link com.mentalresonance.dust.http.msgs.WebsocketBinaryMsg},
+     * {@link com.mentalresonance.dust.http.msgs.WebsocketPongMsg} and {@link com.mentalresonance.dust.http.msgs.WebsocketCloseMsg}
+     * so handlers run on the Actor's thread and never block the socket's read loop. If the Actor wants
+     * {@link WebsocketHandler#partialMessages()} each part is its own text or binary message, counted against
+     * inboundCapacity.
+     * @param inboundCapacity most unprocessed text and binary messages
+     * @param overflow what gives when there are that many
+     * @return this
+     */
+    public WebsocketOptions mailbox(int inboundCapacity, Overflow overflow) {
+        this.mailbox = true;
+        this.inboundCapacity = Math.max(1, inboundCapacity);
+        this.overflow = overflow;
+        return this;
+    }
+
+    /**
+     * Bound outbound sends - see {@link WebsocketWriter}
+     * @param maxInFlightSends most async sends outstanding
+     * @param maxQueuedSends most sends waiting - beyond this they fail at once
+     * @return this
+     */
+    public WebsocketOptions sends(int maxInFlightSends, int maxQueuedSends) {
+        this.maxInFlightSends = Math.max(1, maxInFlightSends);
+        this.maxQueuedSends = Math.max(0, maxQueuedSends);
+        return this;
+    }
+
+    /**
+     * Coalesce queued text messages into a single frame. Only for protocols where one frame may carry several
+     * messages - e.g. joining JSON messages into a JSON array the server accepts.
+     * @param coalesceMax most messages in one frame
+     * @param textJoiner makes the frame from the messages
+     * @return this
+     */
+    public WebsocketOptions coalesce(int coalesceMax, Function<List<String>, String> textJoiner) {
+        this.coalesceMax = Math.max(1, coalesceMax);
+        this.textJoiner = textJoiner;
+        return this;
+    }
+
+    /**
+     * @param container name of the {@link WebsocketService} container to connect through
+     * @return this
+     */
+    public WebsocketOptions container(String container) {
+        this.container = container;
+        return this;
+    }
+
+    /**
+     * Reconnect when the connection fails or drops, after a jittered delay which doubles from minDelayMs up to
+     * maxDelayMs. Subscriptions are replayed on reconnection.
+     * @param minDelayMs first delay
+     * @param maxDelayMs longest delay
+     * @param maxAttempts consecutive failures before giving up - 0 for never
+     * @return this
+     */
+    public WebsocketOptions reconnect(long minDelayMs, long maxDelayMs, int maxAttempts) {
+        this.reconnect = true;
+        this.reconnectMinDelayMs = Math.max(1L, minDelayMs);
+        this.reconnectMaxDelayMs = Math.max(this.reconnectMinDelayMs, maxDelayMs);
+        this.reconnectMaxAttempts = maxAttempts;
+        return this;
+    }
+
+    /**
+     * Offer permessage-deflate compression - see {@link PerMessageDeflateExtension}. If the server declines
+     * messages are sent uncompressed.
+     * @param level 0-9 or Deflater.DEFAULT_COMPRESSION
+     * @param minBytes smallest outbound message compressed
+     * @param clientNoContextTakeover reset our compressor after each message
+     * @param serverNoContextTakeover ask the server to reset its compressor after each message
+     * @return this
+     */
+    public WebsocketOptions deflate(int level, int minBytes, boolean clientNoContextTakeover, boolean serverNoContextTakeover) {
+        this.deflate = true;
+        this.deflateLevel = level;
+        this.deflateMinBytes = minBytes;
+        this.clientNoContextTakeover = clientNoContextTakeover;
+        this.serverNoContextTakeover = serverNoContextTakeover;
+        return this;
+    }
+
+    /**
+     * Ping every intervalMs and close the connection (reconnecting if set) when a ping is unanswered for timeoutMs
+     * - see {@link WebsocketHeartbeat}
+     * @param intervalMs between pings
+     * @param timeoutMs before the connection is dead
+     * @return this
+     */
+    public WebsocketOptions heartbeat(long intervalMs, long timeoutMs) {
+        this.heartbeatIntervalMs = intervalMs;
+        this.heartbeatTimeoutMs = timeoutMs;
+        return this;
+    }
+}
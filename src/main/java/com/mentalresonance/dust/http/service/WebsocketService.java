@@ -0,0 +1,85 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mentalresonance.dust.http.service;
+
+import org.glassfish.tyrus.client.ClientManager;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Named, shared websocket containers - one is built per registered {@link WebsocketContainerConfig} rather than one
+ * per connection. Connections are made on virtual threads so opening many at once neither blocks the caller nor
+ * ties up platform threads.
+ */
+public class WebsocketService {
+
+    /**
+     * Name of the container used when none is specified
+     */
+    public static final String DEFAULT_CONTAINER = "default";
+
+    /**
+     * Registered containers by name
+     */
+    static final Map<String, ClientManager> containers = new ConcurrentHashMap<>();
+
+    /**
+     * Blocking connection handshakes
+     */
+    static final ExecutorService connectors = Executors.newThreadPerTaskExecutor(
+        Thread.ofVirtual().name("dust-websocket-connect-", 0).factory()
+    );
+
+    /**
+     * Constructor
+     */
+    public WebsocketService() {}
+
+    /**
+     * Register (or replace) a named container. Existing connections keep the container they were made with.
+     * @param name of container
+     * @param config of the container
+     * @return the container
+     */
+    public static ClientManager register(String name, WebsocketContainerConfig config) {
+        ClientManager container = config.buildContainer();
+        containers.put(name, container);
+        return container;
+    }
+
+    /**
+     * Get a registered container. The default container is built on first use unless registered.
+     * @param name of container. null means the default container.
+     * @return the container
+     * @throws IllegalArgumentException if no such container has been registered
+     */
+    public static ClientManager getContainer(String name) {
+        if (null == name || DEFAULT_CONTAINER.equals(name)) {
+            return containers.computeIfAbsent(DEFAULT_CONTAINER, n -> new WebsocketContainerConfig().buildContainer());
+        }
+        ClientManager container = containers.get(name);
+
+        if (null == container) {
+            throw new IllegalArgumentException("No WebsocketService container: " + name);
+        }
+        return container;
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.mentalresonance.dust.http.service;
+
+import com.mentalresonance.dust.core.actors.ActorRef;
+import com.mentalresonance.dust.http.msgs.WebsocketSendResultMsg;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.websocket.RemoteEndpoint;
+import javax.websocket.SendHandler;
+import javax.websocket.Session;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Outbound side of a websocket. At most maxInFlight async sends are outstanding - the rest wait in a queue of at
+ * most maxQueued, beyond which sends fail at once. Queued text messages may be coalesced into one frame by a
+ * protocol specific joiner - the container's own send batching is a no-op in Tyrus so is not used. While held, sends
+ * wait in the queue rather than being written - e.g. until a connection is first made.
+ * <p>
+ * Outcomes are told to the target as {@link WebsocketSendResultMsg}s - for every tagged send, and for untagged sends
+ * only on failure.
+ * </p>
+ */
+@Slf4j
+public class WebsocketWriter {
+
+    final Supplier<Session> session;
+    final ActorRef target;
+    final int maxInFlight;
+    final int maxQueued;
+    final int coalesceMax;
+    final Function<List<String>, String> joiner;
+
+    final ArrayDeque<Pending> queue = new ArrayDeque<>();
+    int inFlight = 0;
+    long sent = 0L;
+    long failed = 0L;
+    boolean pumping = false;
+    boolean held = false;
+
+    /**
+     * Constructor
+     * @param session supplies the current session - null if not connected
+     * @param target told the outcomes - may be null
+     * @param options giving the limits
+     */
+    public WebsocketWriter(Supplier<Session> session, ActorRef target, WebsocketOptions options) {
+        this.session = session;
+        this.target = target;
+        this.maxInFlight = options.getMaxInFlightSends();
+        this.maxQueued = options.getMaxQueuedSends();
+        this.coalesceMax = options.getCoalesceMax();
+        this.joiner = options.getTextJoiner();
+    }
+
+    /**
+     * Send a text message
+     * @param text the message
+     * @param tag returned in the outcome - null for none
+     */
+    public void send(String text, Serializable tag) {
+        enqueue(new Pending(text, tag));
+    }
+
+    /**
+     * Send a binary message. The buffer must not be changed until sent.
+     * @param data the message
+     * @param tag returned in the outcome - null for none
+     */
+    public void send(ByteBuffer data, Serializable tag) {
+        enqueue(new Pending(data, tag));
+    }
+
+    /**
+     * Hold sends in the queue, or write those held
+     * @param held true to hold
+     */
+    public void hold(boolean held) {
+        synchronized (this) {
+            this.held = held;
+        }
+        if (! held) {
+            pump();
+        }
+    }
+
+    /**
+     * @return sends in flight
+     */
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * @return sends waiting
+     */
+    public synchronized int getQueued() {
+        return queue.size();
+    }
+
+    /**
+     * @return messages sent
+     */
+    public synchronized long getSent() {
+        return sent;
+    }
+
+    /**
+     * @return messages which failed
+     */
+    public synchronized long getFailed() {
+        return failed;
+    }
+
+    void enqueue(Pending pending) {
+        boolean full;
+
+        synchronized (this) {
+            full = queue.size() >= maxQueued;
+            if (! full) {
+                queue.add(pending);
+            }
+        }
+        if (full) {
+            report(List.of(pending), new IOException("Websocket send queue full"));
+        } else
+            pump();
+    }
+
+    /*
+     * A send's handler may run on this thread, inside sendText(), so rather than recurse a nested pump() leaves it to
+     * the running one - which rechecks the queue under the lock before it stops.
+     */
+    void pump() {
+        synchronized (this) {
+            if (pumping) {
+                return;
+            }
+            pumping = true;
+        }
+        while (true) {
+            List<Pending> frame;
+
+            synchronized (this) {
+                if (held || inFlight >= maxInFlight || queue.isEmpty()) {
+                    pumping = false;
+                    return;
+                }
+                frame = take();
+                ++inFlight;
+            }
+            write(frame);
+        }
+    }
+
+    /*
+     * Must hold lock. Consecutive text messages are coalesced if there is a joiner.
+     */
+    List<Pending> take() {
+        List<Pending> frame = new ArrayList<>(1);
+        frame.add(queue.poll());
+
+        if (null != joiner && frame.get(0).payload instanceof String) {
+            while (frame.size() < coalesceMax && null != queue.peek() && queue.peek().payload instanceof String) {
+                frame.add(queue.poll());
+            }
+        }
+        return frame;
+    }
+
+    void write(List<Pending> frame) {
+        Session session = this.session.get();
+
+        if (null == session || ! session.isOpen()) {
+            completed(frame, new IOException("Websocket not open"));
+            return;
+        }
+        RemoteEndpoint.Async remote = session.getAsyncRemote();
+        SendHandler handler = result -> {
+            completed(frame, result.isOK() ? null : result.getException());
+            pump();
+        };
+        try {
+            if (frame.size() > 1) {
+                remote.sendText(joiner.apply(frame.stream().map(p -> (String) p.payload).toList()), handler);
+            }
+            else if (frame.get(0).payload instanceof String text) {
+                remote.sendText(text, handler);
+            } else
+                remote.sendBinary((ByteBuffer) frame.get(0).payload, handler);
+        } catch (RuntimeException e) {
+            completed(frame, e);
+        }
+    }
+
+    /*
+     * A dispatched frame is done
+     */
+    void completed(List<Pending> frame, Throwable t) {
+        synchronized (this) {
+            --inFlight;
+        }
+        report(frame, t);
+    }
+
+    void report(List<Pending> frame, Throwable t) {
+        synchronized (this) {
+            if (null == t) {
+                sent += frame.size();
+            } else
+                failed += frame.size();
+        }
+        for (Pending pending : frame) {
+            if (null != t || null != pending.tag) {
+                if (null != target) {
+                    target.tell(new WebsocketSendResultMsg(pending.tag, t), null);
+                } else if (null != t) {
+                    log.warn("Websocket send failed: {}", t.getMessage());
+                }
+            }
+        }
+    }
+
+    record Pending(Object payload, Serializable tag) {}
+}
@@ -17,10 +17,15 @@
 
 package com.mentalresonance.dust.http.trait;
 
+import com.mentalresonance.dust.core.actors.Actor;
 import com.mentalresonance.dust.core.actors.ActorRef;
 import com.mentalresonance.dust.core.actors.ActorTrait;
+import com.mentalresonance.dust.http.msgs.DeferredHttpRequestMsg;
+import com.mentalresonance.dust.http.service.HttpRateLimiter;
 import com.mentalresonance.dust.http.service.HttpRequestResponseMsg;
+import com.mentalresonance.dust.http.service.HttpResponseData;
 import com.mentalresonance.dust.http.service.HttpService;
+import com.mentalresonance.dust.http.service.StreamingHttpOptions;
 import okhttp3.Request;
 import okhttp3.Response;
 import okhttp3.sse.EventSource;
@@ -39,14 +44,81 @@ import java.util.LinkedHashMap;
 public interface HttpClientActor extends ActorTrait {
 
     /**
-     * Generic request
+     * The {@link HttpService} client profile requests are made on. Override to give an Actor (or group of
+     * Actors) a tuned client registered via {@link HttpService#register}.
+     * @return profile name
+     */
+    default String httpProfile() {
+        return HttpService.DEFAULT_PROFILE;
+    }
+
+    /**
+     * Rate limiter governing this Actor's requests. Override to return a (usually shared) limiter. Requests
+     * over budget are deferred using the Actor's scheduler so the Actor's behavior must hand the resulting
+     * {@link DeferredHttpRequestMsg}s to {@link #request(DeferredHttpRequestMsg)}.
+     * @return the limiter or null (the default) for no limit
+     */
+    default HttpRateLimiter rateLimiter() {
+        return null;
+    }
+
+    /**
+     * Should responses be read into {@link HttpRequestResponseMsg#data} and closed before being sent back
+     * (regardless of the message's own materialize flag).
+     * @return false by default
+     */
+    default boolean materializeResponses() {
+        return false;
+    }
+
+    /**
+     * Options of Server Sent streams requested by this Actor
+     * @return the options or null (the default) for plain streams
+     */
+    default StreamingHttpOptions streamingOptions() {
+        return null;
+    }
+
+    /**
+     * Generic request. If a {@link #rateLimiter()} is in place and the request is over budget it is scheduled
+     * back to this Actor as a {@link DeferredHttpRequestMsg} to be made when its permit is due.
      * @param msg Request/Response container - {@link HttpRequestResponseMsg}
      */
     default void request(HttpRequestResponseMsg msg) {
+        HttpRateLimiter limiter = rateLimiter();
+        long delay = null != limiter ? limiter.reserve(msg.request) : 0L;
+
+        if (delay > 0L && this instanceof Actor actor) {
+            actor.scheduleIn(new DeferredHttpRequestMsg(msg), delay);
+        } else
+            requestNow(msg);
+    }
+
+    /**
+     * Make a request whose rate limit permit is now due
+     * @param deferred the deferred request
+     */
+    default void request(DeferredHttpRequestMsg deferred) {
+        requestNow(deferred.msg);
+    }
+
+    /**
+     * Make the request, bypassing any rate limiter
+     * @param msg Request/Response container - {@link HttpRequestResponseMsg}
+     */
+    default void requestNow(HttpRequestResponseMsg msg) {
         HttpService.doRequest(
+            null != msg.profile ? msg.profile : httpProfile(),
             msg.request,
                 (Response response) -> {
-                    msg.response = response;
+                    if (msg.materialize || materializeResponses()) {
+                        try {
+                            msg.data = HttpResponseData.of(response);
+                        } catch (IOException e) {
+                            msg.exception = e;
+                        }
+                    } else
+                        msg.response = response;
                     msg.getSender().tell(msg, getSelf());
                     return null;
                 } ,
@@ -58,6 +130,24 @@ public interface HttpClientActor extends ActorTrait {
         );
     }
 
+    /**
+     * Make the request streaming the response body back to the sender of msg as
+     * {@link com.mentalresonance.dust.http.msgs.HttpBodyStartMsg}, {@link com.mentalresonance.dust.http.msgs.HttpBodyChunkMsg}s
+     * and {@link com.mentalresonance.dust.http.msgs.HttpBodyEndMsg} rather than as a Response. Chunks are only read as
+     * the receiver grants credit on the stream. Not rate limited.
+     * @param msg Request/Response container - {@link HttpRequestResponseMsg}
+     * @param initialCredit chunks which may be sent before the receiver grants more
+     */
+    default void stream(HttpRequestResponseMsg msg, long initialCredit) {
+        HttpService.streamBody(
+            null != msg.profile ? msg.profile : httpProfile(),
+            msg.request,
+            msg.getSender(),
+            msg.tag,
+            initialCredit
+        );
+    }
+
     /**
      * Simple case - GET on url
      * @param url - the url
@@ -97,6 +187,8 @@ public interface HttpClientActor extends ActorTrait {
      * @return The EventSource which we can cancel
      */
     default EventSource request(HttpRequestResponseMsg msg, ActorRef client, ActorRef server) {
-        return HttpService.doRequest(msg.request, client, server);
+        return HttpService.doRequest(
+            null != msg.profile ? msg.profile : httpProfile(), msg.request, client, server, streamingOptions()
+        );
     }
 }
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+
+import com.mentalresonance.dust.http.service.AdaptiveConcurrencyLimiter
+import spock.lang.Specification
+
+/**
+ * AIMD limits shrink on drops, grow under load and queue excess requests
+ */
+class AdaptiveLimiterTest extends Specification {
+
+	def "AIMD backs off and queues"() {
+		when:
+			AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter().initialLimit(2).backoffRatio(0.5)
+			int started = 0
+			int rejected = 0
+			3.times { limiter.acquire('h', { started++ } as Runnable, { rejected++ }) }
+		then:
+			started == 2
+			rejected == 0
+			limiter.getInFlight('h') == 2
+
+		when:
+			limiter.release('h', 1_000_000L, true)
+		then:
+			limiter.getLimit('h') == 1
+			started == 2
+
+		when:
+			limiter.release('h', 1_000_000L, false)
+		then:
+			started == 3
+			limiter.getLimits() == [h: 2]
+	}
+
+	def "Idle hosts are forgotten"() {
+		given:
+			AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter().idleEvictMs(0L)
+		when:
+			limiter.acquire('a', {} as Runnable, {})
+			limiter.release('a', 1_000_000L, false)
+			Thread.sleep(2L)
+			limiter.acquire('b', {} as Runnable, {})
+			Thread.sleep(2L)
+			limiter.acquire('c', {} as Runnable, {})
+		then:
+			limiter.limits.keySet() == ['b', 'c'] as Set
+			limiter.getInFlight('b') == 1
+	}
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+import com.mentalresonance.dust.http.service.HttpService
+import com.mentalresonance.dust.http.service.HttpServiceConfig
+import com.sun.net.httpserver.HttpServer
+import okhttp3.Request
+import okhttp3.Response
+import spock.lang.Shared
+import spock.lang.Specification
+
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Blocking calls on virtual threads scale past the dispatcher, honour deadlines and are cancelled by interrupts
+ */
+class BlockingCallTest extends Specification {
+
+	@Shared HttpServer server
+	@Shared String base
+
+	def setupSpec() {
+		server = HttpServer.create(new InetSocketAddress('127.0.0.1', 0), 0)
+		server.executor = Executors.newVirtualThreadPerTaskExecutor()
+		server.createContext('/sleep') { exchange ->
+			Thread.sleep(exchange.requestURI.query.toLong())
+			byte[] body = 'ok'.bytes
+			exchange.sendResponseHeaders(200, body.length)
+			exchange.responseBody.withCloseable { it.write(body) }
+		}
+		server.start()
+		base = "http://127.0.0.1:${server.address.port}"
+		HttpService.register('blocking', new HttpServiceConfig()
+			.blockingCalls(true)
+			.virtualThreadDispatcher(true)
+			.maxRequests(4)
+			.maxIdleConnections(300))
+		HttpService.register('waiting', new HttpServiceConfig())
+	}
+
+	def cleanupSpec() {
+		server.stop(0)
+		HttpService.shutdown('blocking')
+		HttpService.shutdown('waiting')
+	}
+
+	def "Many blocking calls at once"() {
+		given:
+			AtomicInteger ok = new AtomicInteger()
+			Request request = HttpService.buildGetRequest("${base}/sleep?200")
+		when:
+			long start = System.currentTimeMillis()
+			Executors.newVirtualThreadPerTaskExecutor().withCloseable { exec ->
+				(1..200).each {
+					exec.submit {
+						Response r = HttpService.doRequest('blocking', request)
+						r.withCloseable { if (it.body().string() == 'ok') ok.incrementAndGet() }
+					}
+				}
+			}
+			long elapsed = System.currentTimeMillis() - start
+		then:
+			ok.get() == 200
+			elapsed < 200 * 200 / 4
+	}
+
+	def "Deadline"() {
+		when:
+			long start = System.currentTimeMillis()
+			HttpService.execute('blocking', HttpService.buildGetRequest("${base}/sleep?3000"), 200L)
+		then:
+			thrown(InterruptedIOException)
+			System.currentTimeMillis() - start < 2000L
+	}
+
+	def "Interrupt cancels"() {
+		given:
+			Throwable failure = null
+			Thread t = Thread.ofVirtual().start {
+				try {
+					HttpService.execute('blocking', HttpService.buildGetRequest("${base}/sleep?3000"), 0L)
+				} catch (IOException e) {
+					failure = e
+				}
+			}
+		when:
+			Thread.sleep(200L)
+			long start = System.currentTimeMillis()
+			t.interrupt()
+			t.join(2000L)
+		then:
+			! t.alive
+			failure instanceof InterruptedIOException
+			System.currentTimeMillis() - start < 2000L
+	}
+
+	def "Interrupting a waiting async request cancels its call"() {
+		given:
+			Throwable failure = null
+			Thread t = Thread.ofVirtual().start {
+				try {
+					HttpService.doRequest('waiting', HttpService.buildGetRequest("${base}/sleep?3000"))
+				} catch (InterruptedException e) {
+					failure = e
+				}
+			}
+		when:
+			Thread.sleep(200L)
+			t.interrupt()
+			t.join(2000L)
+			Thread.sleep(100L)
+		then:
+			failure instanceof InterruptedException
+			HttpService.getHttpClient('waiting').dispatcher().runningCallsCount() == 0
+	}
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+import com.mentalresonance.dust.http.service.AdaptiveConcurrencyLimiter
+import com.mentalresonance.dust.http.service.HttpService
+import com.mentalresonance.dust.http.service.HttpServiceConfig
+import com.mentalresonance.dust.http.service.RetryPolicy
+import com.sun.net.httpserver.HttpServer
+import okhttp3.Request
+import okhttp3.Response
+import spock.lang.Shared
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.function.Function
+
+/**
+ * Requests carrying a tag are cancelled - as a fan-out does to its stragglers - wherever they are: in the dispatcher,
+ * waiting for the adaptive limiter or backing off before a retry. Others, and coalesced calls shared with others,
+ * are left alone.
+ */
+class CancelTaggedTest extends Specification {
+
+	@Shared HttpServer server
+	@Shared String base
+
+	List<String> outcomes = Collections.synchronizedList([])
+
+	def setupSpec() {
+		server = HttpServer.create(new InetSocketAddress('127.0.0.1', 0), 0)
+		server.executor = Executors.newVirtualThreadPerTaskExecutor()
+		server.createContext('/slow') { exchange ->
+			Thread.sleep(exchange.requestURI.query.toLong())
+			exchange.sendResponseHeaders(200, -1)
+			exchange.close()
+		}
+		server.createContext('/unavailable') { exchange ->
+			exchange.responseHeaders.add('Retry-After', '5')
+			exchange.sendResponseHeaders(503, -1)
+			exchange.close()
+		}
+		server.start()
+		base = "http://127.0.0.1:${server.address.port}"
+		HttpService.register('limited', new HttpServiceConfig()
+			.adaptiveLimiter(new AdaptiveConcurrencyLimiter().initialLimit(1).minLimit(1).maxLimit(1)))
+		HttpService.register('retrying', new HttpServiceConfig()
+			.retryPolicy(new RetryPolicy().maxAttempts(2).maxBackoffMs(10_000)))
+		HttpService.register('coalesced', new HttpServiceConfig().coalesce())
+	}
+
+	def cleanupSpec() {
+		server.stop(0)
+		['limited', 'retrying', 'coalesced'].each { HttpService.shutdown(it) }
+	}
+
+	void request(String profile, String path, String tag, CountDownLatch done) {
+		Request r = HttpService.buildGetRequest("${base}${path}").newBuilder().tag(String.class, tag).build()
+		HttpService.doRequest(
+			profile,
+			r,
+			{ Response response -> response.close(); outcomes << "${tag} ${response.code()}".toString(); done.countDown(); null } as Function,
+			{ IOException e -> outcomes << "${tag} failed".toString(); done.countDown(); null } as Function
+		)
+	}
+
+	def "Cancel by tag"() {
+		given:
+			CountDownLatch done = new CountDownLatch(3)
+		when:
+			request(HttpService.DEFAULT_PROFILE, '/slow?3000', 'straggler', done)
+			request(HttpService.DEFAULT_PROFILE, '/slow?3000', 'straggler', done)
+			request(HttpService.DEFAULT_PROFILE, '/slow?300', 'other', done)
+			Thread.sleep(100L)
+			int cancelled = HttpService.cancel(HttpService.DEFAULT_PROFILE, 'straggler')
+		then:
+			cancelled == 2
+			done.await(2, TimeUnit.SECONDS)
+			outcomes.sort() == ['other 200', 'straggler failed', 'straggler failed']
+	}
+
+	def "Cancel while waiting for the adaptive limiter"() {
+		given:
+			CountDownLatch waiting = new CountDownLatch(1)
+			CountDownLatch running = new CountDownLatch(1)
+		when:
+			request('limited', '/slow?1000', 'running', running)
+			request('limited', '/slow?10', 'waiting', waiting)
+			int cancelled = HttpService.cancel('limited', 'waiting')
+		then:
+			cancelled == 1
+			waiting.await(200, TimeUnit.MILLISECONDS)
+			outcomes == ['waiting failed']
+			running.await(2, TimeUnit.SECONDS)
+			outcomes == ['waiting failed', 'running 200']
+	}
+
+	def "Cancel while backing off before a retry"() {
+		given:
+			CountDownLatch done = new CountDownLatch(1)
+		when:
+			request('retrying', '/unavailable', 'retried', done)
+			Thread.sleep(300L)
+			int cancelled = HttpService.cancel('retrying', 'retried')
+		then:
+			cancelled == 1
+			done.await(500, TimeUnit.MILLISECONDS)
+			outcomes == ['retried failed']
+	}
+
+	def "A shared coalesced call is not cancelled"() {
+		given:
+			CountDownLatch done = new CountDownLatch(2)
+		when:
+			request('coalesced', '/slow?500', 'leader', done)
+			request('coalesced', '/slow?500', 'joined', done)
+			Thread.sleep(100L)
+			int cancelled = HttpService.cancel('coalesced', 'leader')
+		then:
+			cancelled == 0
+			done.await(2, TimeUnit.SECONDS)
+			outcomes.sort() == ['joined 200', 'leader 200']
+	}
+}
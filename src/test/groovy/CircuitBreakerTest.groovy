@@ -0,0 +1,84 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+
+import com.mentalresonance.dust.http.service.CircuitBreaker
+import spock.lang.Specification
+
+import static com.mentalresonance.dust.http.service.CircuitBreaker.State.*
+
+/**
+ * Circuit opens after consecutive failures, lets a trial through once half open and closes on its success
+ */
+class CircuitBreakerTest extends Specification {
+
+	def "Open, half open, closed"() {
+		when:
+			CircuitBreaker breaker = new CircuitBreaker().failureThreshold(2).openMs(50)
+			2.times {
+				breaker.failure('h', breaker.allow('h'))
+			}
+		then:
+			breaker.getState('h') == OPEN
+			breaker.allow('h') == CircuitBreaker.REFUSED
+
+		when:
+			Thread.sleep(60)
+			long trial = breaker.allow('h')
+			long second = breaker.allow('h')
+		then:
+			trial != CircuitBreaker.REFUSED
+			second == CircuitBreaker.REFUSED
+			breaker.getState('h') == HALF_OPEN
+
+		when:
+			breaker.success('h', trial)
+		then:
+			breaker.getState('h') == CLOSED
+			breaker.allow('h') != CircuitBreaker.REFUSED
+	}
+
+	def "Only trial outcomes leave half open"() {
+		when:
+			CircuitBreaker breaker = new CircuitBreaker().failureThreshold(1).openMs(50)
+			long straggler = breaker.allow('h')
+			breaker.failure('h', breaker.allow('h'))
+			Thread.sleep(60)
+			long trial = breaker.allow('h')
+			breaker.success('h', straggler)
+		then:
+			breaker.getState('h') == HALF_OPEN
+			breaker.allow('h') == CircuitBreaker.REFUSED
+
+		when:
+			breaker.failure('h', trial)
+		then:
+			breaker.getState('h') == OPEN
+	}
+
+	def "Idle closed circuits are forgotten"() {
+		when:
+			CircuitBreaker breaker = new CircuitBreaker().failureThreshold(1).openMs(60_000).idleEvictMs(0L)
+			breaker.success('a', breaker.allow('a'))
+			breaker.failure('o', breaker.allow('o'))
+			Thread.sleep(2L)
+			breaker.allow('b')
+		then:
+			breaker.circuits.keySet() == ['o', 'b'] as Set
+			breaker.getState('o') == OPEN
+	}
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+import com.mentalresonance.dust.http.service.HedgePolicy
+import spock.lang.Specification
+
+class HedgePolicyTest extends Specification {
+
+	def "Delay follows the latency ring after it wraps"() {
+		given:
+		HedgePolicy policy = new HedgePolicy().window(32).minSamples(20).fixedDelayMs(500).minDelayMs(1).percentile(0.5)
+
+		when:
+		(1..10).each { policy.record('h', 1_000_000L * 900) }
+
+		then:
+		policy.delayMs('h') == 500
+
+		when:
+		(1..1000).each { policy.record('h', 1_000_000L * 10) }
+
+		then:
+		policy.delayMs('h') == 10
+	}
+
+	def "Idle hosts are forgotten"() {
+		given:
+		HedgePolicy policy = new HedgePolicy().idleEvictMs(0L)
+
+		when:
+		policy.record('a', 1_000_000L)
+		Thread.sleep(2L)
+		policy.record('b', 1_000_000L)
+
+		then:
+		policy.latencies.keySet() == ['b'] as Set
+	}
+}
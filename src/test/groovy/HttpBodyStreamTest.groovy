@@ -0,0 +1,154 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+import com.mentalresonance.dust.core.actors.Actor
+import com.mentalresonance.dust.core.actors.ActorBehavior
+import com.mentalresonance.dust.core.actors.ActorSystem
+import com.mentalresonance.dust.core.actors.Props
+import com.mentalresonance.dust.http.msgs.HttpBodyChunkMsg
+import com.mentalresonance.dust.http.msgs.HttpBodyEndMsg
+import com.mentalresonance.dust.http.msgs.HttpBodyStartMsg
+import com.mentalresonance.dust.http.service.HttpBodyStream
+import com.mentalresonance.dust.http.service.HttpRequestResponseMsg
+import com.mentalresonance.dust.http.service.HttpService
+import com.mentalresonance.dust.http.service.HttpServiceConfig
+import com.mentalresonance.dust.http.trait.HttpClientActor
+import com.sun.net.httpserver.HttpServer
+import okio.Buffer
+import okio.BufferedSource
+import okio.Okio
+import okio.Source
+import okio.Timeout
+import spock.lang.Shared
+import spock.lang.Specification
+
+import java.util.concurrent.Executors
+
+/**
+ * Streamed bodies arrive in full chunks of the profile's chunk size - only the last may be short - however the
+ * connection delivers the bytes
+ */
+class HttpBodyStreamTest extends Specification {
+
+	static final int CHUNK = 16 * 1024
+	static final int BODY = 5 * CHUNK + 100
+
+	@Shared HttpServer server
+	@Shared String base
+
+	static List<Integer> lengths = []
+	static long ended = -1L
+
+	static class BodyClient extends Actor implements HttpClientActor {
+
+		String url
+
+		static Props props(String url) {
+			Props.create(BodyClient.class, url)
+		}
+
+		BodyClient(String url) {
+			this.url = url
+		}
+
+		@Override
+		String httpProfile() {
+			'chunked'
+		}
+
+		@Override
+		void preStart() {
+			stream(new HttpRequestResponseMsg(self, HttpService.buildGetRequest(url)), 1L)
+		}
+
+		@Override
+		ActorBehavior createBehavior() {
+			(Serializable message) -> {
+				switch(message) {
+					case HttpBodyStartMsg:
+						break
+
+					case HttpBodyChunkMsg:
+						HttpBodyChunkMsg chunk = (HttpBodyChunkMsg) message
+						lengths << chunk.length
+						chunk.release()
+						chunk.stream.request(1L)
+						break
+
+					case HttpBodyEndMsg:
+						ended = ((HttpBodyEndMsg) message).bytes
+						stopSelf()
+						break
+				}
+			}
+		}
+	}
+
+	def setupSpec() {
+		server = HttpServer.create(new InetSocketAddress('127.0.0.1', 0), 0)
+		server.executor = Executors.newVirtualThreadPerTaskExecutor()
+		server.createContext('/body') { exchange ->
+			byte[] body = new byte[BODY]
+			exchange.sendResponseHeaders(200, body.length)
+			exchange.responseBody.withCloseable { out ->
+				// Dribble it out so no read sees more than a little
+				for (int i = 0; i < body.length; i += 1000) {
+					out.write(body, i, Math.min(1000, body.length - i))
+					out.flush()
+				}
+			}
+		}
+		server.start()
+		base = "http://127.0.0.1:${server.address.port}"
+		HttpService.register('chunked', new HttpServiceConfig().bodyChunks(CHUNK, 8))
+	}
+
+	def cleanupSpec() {
+		server.stop(0)
+		HttpService.shutdown('chunked')
+	}
+
+	def "Chunks are filled"() {
+		when:
+			ActorSystem system = new ActorSystem("Test")
+			system.context.actorOf(BodyClient.props("${base}/body".toString())).waitForDeath()
+			system.stop()
+		then:
+			lengths == [CHUNK] * 5 + [100]
+			ended == BODY
+	}
+
+	def "Fill reads past segment boundaries"() {
+		given:
+			Buffer data = new Buffer().write(new byte[BODY])
+			// Hands out at most 1000 bytes a read
+			Source dribble = new Source() {
+				long read(Buffer sink, long byteCount) { data.read(sink, Math.min(1000L, byteCount)) }
+				Timeout timeout() { Timeout.NONE }
+				void close() {}
+			}
+			BufferedSource source = Okio.buffer(dribble)
+			byte[] chunk = new byte[CHUNK]
+			List<Integer> filled = []
+		when:
+			int n
+			while ((n = HttpBodyStream.fill(source, chunk)) > 0) {
+				filled << n
+			}
+		then:
+			filled == [CHUNK] * 5 + [100]
+	}
+}
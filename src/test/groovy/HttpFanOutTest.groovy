@@ -0,0 +1,167 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+import com.mentalresonance.dust.core.actors.Actor
+import com.mentalresonance.dust.core.actors.ActorBehavior
+import com.mentalresonance.dust.core.actors.ActorRef
+import com.mentalresonance.dust.core.actors.ActorSystem
+import com.mentalresonance.dust.core.actors.Props
+import com.mentalresonance.dust.http.actors.HttpFanOutActor
+import com.mentalresonance.dust.http.msgs.HttpFanOutRequestMsg
+import com.mentalresonance.dust.http.msgs.HttpFanOutResultMsg
+import com.mentalresonance.dust.http.service.HttpRequestResponseMsg
+import com.mentalresonance.dust.http.service.HttpService
+import com.sun.net.httpserver.HttpServer
+import spock.lang.Shared
+import spock.lang.Specification
+
+import java.util.concurrent.Executors
+
+import static com.mentalresonance.dust.http.msgs.HttpFanOutRequestMsg.Mode.*
+
+/**
+ * Fan out to a local server whose paths sleep for the given ms (/ok) or fail (/fail) - gathering ALL, a QUORUM or a
+ * STREAM of results, and giving up on stragglers at the deadline
+ */
+class HttpFanOutTest extends Specification {
+
+	@Shared HttpServer server
+	@Shared String base
+
+	static HttpFanOutResultMsg result = null
+	static List<HttpRequestResponseMsg> streamed = []
+
+	static class FanOutClient extends Actor {
+
+		HttpFanOutRequestMsg.Mode mode
+		Integer quorum
+		Long deadlineMs
+		List<String> urls
+		ActorRef fanOut
+
+		static Props props(HttpFanOutRequestMsg.Mode mode, Integer quorum, Long deadlineMs, List<String> urls) {
+			Props.create(FanOutClient.class, mode, quorum, deadlineMs, urls)
+		}
+
+		FanOutClient(HttpFanOutRequestMsg.Mode mode, Integer quorum, Long deadlineMs, List<String> urls) {
+			this.mode = mode
+			this.quorum = quorum
+			this.deadlineMs = deadlineMs
+			this.urls = urls
+		}
+
+		@Override
+		void preStart() {
+			fanOut = context.actorOf(HttpFanOutActor.props(2))
+			List<HttpRequestResponseMsg> requests = urls.withIndex().collect { String url, int i ->
+				new HttpRequestResponseMsg(self, HttpService.buildGetRequest(url), i)
+			}
+			fanOut.tell(new HttpFanOutRequestMsg(requests, mode, quorum, deadlineMs, 'fan'), self)
+		}
+
+		@Override
+		ActorBehavior createBehavior() {
+			(Serializable message) -> {
+				switch(message) {
+					case HttpRequestResponseMsg:
+						HttpRequestResponseMsg msg = (HttpRequestResponseMsg) message
+						msg.response?.close()
+						streamed << msg
+						break
+
+					case HttpFanOutResultMsg:
+						result = (HttpFanOutResultMsg) message
+						stopSelf()
+						break
+				}
+			}
+		}
+	}
+
+	def setupSpec() {
+		server = HttpServer.create(new InetSocketAddress('127.0.0.1', 0), 0)
+		server.executor = Executors.newVirtualThreadPerTaskExecutor()
+		server.createContext('/ok') { exchange ->
+			Thread.sleep(exchange.requestURI.query.toLong())
+			byte[] body = 'ok'.bytes
+			exchange.sendResponseHeaders(200, body.length)
+			exchange.responseBody.withCloseable { it.write(body) }
+		}
+		server.createContext('/fail') { exchange ->
+			exchange.sendResponseHeaders(500, -1)
+			exchange.close()
+		}
+		server.start()
+		base = "http://127.0.0.1:${server.address.port}"
+	}
+
+	def cleanupSpec() {
+		server.stop(0)
+	}
+
+	def setup() {
+		result = null
+		streamed.clear()
+	}
+
+	void run(HttpFanOutRequestMsg.Mode mode, int quorum, long deadlineMs, List<String> urls) {
+		ActorSystem system = new ActorSystem("Test")
+		system.context.actorOf(FanOutClient.props(mode, quorum, deadlineMs, urls)).waitForDeath()
+		system.stop()
+	}
+
+	def "All"() {
+		when:
+			run(ALL, 0, 0L, ["${base}/ok?50", "${base}/fail", "${base}/ok?100"]*.toString())
+		then:
+			result.complete
+			! result.timedOut
+			result.results.size() == 3
+			result.succeeded == 2
+			result.results.find { it.tag == 0 }.data.bodyString() == 'ok'
+	}
+
+	def "Quorum"() {
+		when:
+			long start = System.currentTimeMillis()
+			run(QUORUM, 2, 0L, ["${base}/ok?50", "${base}/ok?50", "${base}/ok?5000"]*.toString())
+		then:
+			System.currentTimeMillis() - start < 3000L
+			result.succeeded == 2
+			! result.complete
+			result.results.size() == 2
+	}
+
+	def "Stream"() {
+		when:
+			run(STREAM, 0, 0L, ["${base}/ok?200", "${base}/ok?10"]*.toString())
+		then:
+			streamed*.tag == [1, 0]
+			result.complete
+			result.results.isEmpty()
+	}
+
+	def "Deadline"() {
+		when:
+			long start = System.currentTimeMillis()
+			run(ALL, 0, 300L, ["${base}/ok?10", "${base}/ok?5000", "${base}/ok?5000"]*.toString())
+		then:
+			System.currentTimeMillis() - start < 3000L
+			result.timedOut
+			result.completed == 1
+			result.results*.tag == [0]
+	}
+}
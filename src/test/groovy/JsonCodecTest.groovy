@@ -0,0 +1,61 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+
+import com.mentalresonance.dust.http.service.HttpService
+import okhttp3.*
+import okio.Buffer
+import spock.lang.Specification
+
+/**
+ * JSON bodies encode once with a length and decode straight from the response body
+ */
+class JsonCodecTest extends Specification {
+
+	static class Point {
+		int x, y
+	}
+
+	def "Encode and decode"() {
+		when:
+			RequestBody body = HttpService.jsonBody([x: 1, y: 2])
+			Buffer first = new Buffer()
+			Buffer second = new Buffer()
+			body.writeTo(first)
+			body.writeTo(second)
+			long length = body.contentLength()
+			String json = first.readUtf8()
+
+			Request request = HttpService.buildPostRequest('http://example.com', new LinkedHashMap<String, Object>([x: 1, y: 2]))
+			Response response = new Response.Builder()
+				.request(request)
+				.protocol(Protocol.HTTP_1_1)
+				.code(200)
+				.message('OK')
+				.body(ResponseBody.create(json, MediaType.get('application/json')))
+				.build()
+			Point point = HttpService.decodeJson(response, Point)
+
+		then:
+			json == '{"x":1,"y":2}'
+			length == json.length()
+			second.readUtf8() == json
+			request.body().contentType().toString() == 'application/json; charset=utf-8'
+			point.x == 1
+			point.y == 2
+	}
+}
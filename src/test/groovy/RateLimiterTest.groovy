@@ -0,0 +1,64 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+
+import com.mentalresonance.dust.http.service.HttpRateLimiter
+import com.mentalresonance.dust.http.service.HttpService
+import com.mentalresonance.dust.http.service.TokenBucket
+import okhttp3.Request
+import spock.lang.Specification
+
+/**
+ * Burst and per-host behaviour of the rate limiter
+ */
+class RateLimiterTest extends Specification {
+
+	def "Bucket allows burst then defers"() {
+		when:
+			TokenBucket bucket = new TokenBucket(10, 3)
+			List<Boolean> taken = (1..4).collect { bucket.tryAcquire() }
+		then:
+			taken == [true, true, true, false]
+			bucket.reserve() > 0L
+	}
+
+	def "Limits are per host"() {
+		when:
+			HttpRateLimiter limiter = new HttpRateLimiter().perHost(1, 1)
+			Request a = HttpService.buildGetRequest('https://a.example.com/x')
+			Request b = HttpService.buildGetRequest('https://b.example.com/x')
+		then:
+			limiter.reserve(a) == 0L
+			limiter.reserve(b) == 0L
+			limiter.reserve(a) > 0L
+	}
+
+	def "Refilled buckets are swept"() {
+		given:
+			HttpRateLimiter limiter = new HttpRateLimiter().perHost(100, 1)
+		when:
+			(1..50).each { limiter.reserve(HttpService.buildGetRequest("https://h${it}.example.com/x")) }
+		then:
+			limiter.bucketCount == 50
+		when:
+			Thread.sleep(50L)
+			limiter.limits[0].sweep()
+		then:
+			limiter.bucketCount == 0
+			limiter.reserve(HttpService.buildGetRequest('https://h1.example.com/x')) == 0L
+	}
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+import com.mentalresonance.dust.http.service.ReorderBuffer
+import spock.lang.Specification
+
+/**
+ * Results completing out of order are released in sequence
+ */
+class ReorderBufferTest extends Specification {
+
+	def "Release in order"() {
+		given:
+			ReorderBuffer<String> buffer = new ReorderBuffer<>()
+			List<String> out = []
+		when:
+			out += buffer.add(2, 'c')
+			out += buffer.add(1, 'b')
+		then:
+			out == []
+			buffer.size() == 2
+		when:
+			out += buffer.add(0, 'a')
+			out += buffer.add(4, 'e')
+		then:
+			out == ['a', 'b', 'c']
+			buffer.next == 3
+			buffer.size() == 1
+		when:
+			out += buffer.add(3, 'd')
+		then:
+			out == ['a', 'b', 'c', 'd', 'e']
+			buffer.size() == 0
+	}
+
+	def "Shuffled sequence comes out sorted"() {
+		given:
+			ReorderBuffer<Integer> buffer = new ReorderBuffer<>()
+			List<Integer> seqs = (0..<1000).toList()
+			Collections.shuffle(seqs, new Random(42))
+			List<Integer> out = []
+		when:
+			seqs.each { out += buffer.add(it, it) }
+		then:
+			out == (0..<1000).toList()
+	}
+}
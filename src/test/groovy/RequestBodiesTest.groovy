@@ -0,0 +1,59 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+
+import com.mentalresonance.dust.http.service.RequestBodies
+import okhttp3.RequestBody
+import okio.Buffer
+import okio.GzipSource
+import okio.Okio
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.nio.file.Path
+
+/**
+ * File bodies stream the file and gzip bodies compress on the way out
+ */
+class RequestBodiesTest extends Specification {
+
+	def "File and gzip"() {
+		given:
+			Path path = Files.createTempFile('body', '.json')
+			String content = '{"v":1}' * 100_000
+			Files.writeString(path, content)
+
+		when:
+			RequestBody file = RequestBodies.file(path, RequestBodies.JSON)
+			Buffer plain = new Buffer()
+			file.writeTo(plain)
+			Buffer zipped = new Buffer()
+			RequestBodies.gzip(file).writeTo(zipped)
+			long zippedSize = zipped.size()
+			String unzipped = Okio.buffer(new GzipSource(zipped)).readUtf8()
+
+		then:
+			file.contentLength() == content.length()
+			plain.readUtf8() == content
+			RequestBodies.gzip(file).contentLength() == -1L
+			zippedSize < content.length()
+			unzipped == content
+
+		cleanup:
+			Files.deleteIfExists(path)
+	}
+}
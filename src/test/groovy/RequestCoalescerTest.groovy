@@ -0,0 +1,89 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+import com.mentalresonance.dust.http.service.HttpService
+import com.mentalresonance.dust.http.service.HttpServiceConfig
+import com.sun.net.httpserver.HttpServer
+import okhttp3.Request
+import okhttp3.Response
+import spock.lang.Shared
+import spock.lang.Specification
+
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Identical GETs share one upstream call but requests for different ranges each reach the server
+ */
+class RequestCoalescerTest extends Specification {
+
+	@Shared HttpServer server
+	@Shared String base
+	@Shared AtomicInteger hits = new AtomicInteger()
+
+	def setupSpec() {
+		server = HttpServer.create(new InetSocketAddress('127.0.0.1', 0), 0)
+		server.executor = Executors.newVirtualThreadPerTaskExecutor()
+		server.createContext('/slow') { exchange ->
+			hits.incrementAndGet()
+			Thread.sleep(300)
+			byte[] body = (exchange.requestHeaders.getFirst('Range') ?: 'all').bytes
+			exchange.sendResponseHeaders(200, body.length)
+			exchange.responseBody.withCloseable { it.write(body) }
+		}
+		server.start()
+		base = "http://127.0.0.1:${server.address.port}"
+		HttpService.register('coalescing', new HttpServiceConfig().coalesce())
+	}
+
+	def cleanupSpec() {
+		server.stop(0)
+		HttpService.shutdown('coalescing')
+	}
+
+	def setup() {
+		hits.set(0)
+	}
+
+	List<String> fetch(List<Request> requests) {
+		Executors.newVirtualThreadPerTaskExecutor().withCloseable { exec ->
+			List<Future<String>> bodies = requests.collect { Request request ->
+				exec.submit({ HttpService.doRequest('coalescing', request).withCloseable { Response r -> r.body().string() } } as java.util.concurrent.Callable<String>)
+			}
+			bodies*.get()
+		}
+	}
+
+	def "Identical GETs coalesce"() {
+		when:
+			List<String> bodies = fetch((1..2).collect { new Request.Builder().url("${base}/slow").build() })
+		then:
+			bodies == ['all', 'all']
+			hits.get() == 1
+	}
+
+	def "Ranged GETs each reach the server"() {
+		when:
+			List<String> bodies = fetch([
+				new Request.Builder().url("${base}/slow").header('Range', 'bytes=0-9').build(),
+				new Request.Builder().url("${base}/slow").header('Range', 'bytes=10-19').build()
+			])
+		then:
+			bodies == ['bytes=0-9', 'bytes=10-19']
+			hits.get() == 2
+	}
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+
+import com.mentalresonance.dust.http.service.ResponseCache
+import okhttp3.*
+import spock.lang.Specification
+
+import java.util.function.BiConsumer
+
+/**
+ * Hits skip the network, stale entries revalidate with If-None-Match and a 304 refreshes them
+ */
+class ResponseCacheTest extends Specification {
+
+	OkHttpClient client = new OkHttpClient()
+	Request request = new Request.Builder().url('http://example.com/a').build()
+
+	Response response(Request req, int code, String cacheControl) {
+		new Response.Builder()
+			.request(req)
+			.protocol(Protocol.HTTP_1_1)
+			.code(code)
+			.message('')
+			.header('Cache-Control', cacheControl)
+			.header('ETag', '"v1"')
+			.body(ResponseBody.create(304 == code ? '' : 'hello', MediaType.get('text/plain')))
+			.build()
+	}
+
+	def "Hit, expire, revalidate"() {
+		given:
+			ResponseCache cache = new ResponseCache()
+			List<Request> sent = []
+			List<String> bodies = []
+			int code = 200
+			def execute = { Request req, Callback cb ->
+				sent << req
+				cb.onResponse(client.newCall(req), response(req, code, 'max-age=0'))
+			} as BiConsumer<Request, Callback>
+			Callback callback = new Callback() {
+				void onFailure(Call call, IOException e) {}
+				void onResponse(Call call, Response r) { bodies << r.body().string() }
+			}
+
+		when:
+			cache.defaultTtlMs(60_000)
+			cache.handle(client, request, callback, execute)
+		then:
+			sent.size() == 1
+			cache.entryCount == 1
+
+		when:
+			code = 304
+			cache.handle(client, request, callback, execute)
+		then:
+			sent.size() == 2
+			sent[1].header('If-None-Match') == '"v1"'
+			cache.revalidations == 1
+			bodies == ['hello', 'hello']
+	}
+
+	def "A 304 updates the stored headers and freshness"() {
+		given:
+			ResponseCache cache = new ResponseCache()
+			List<Request> sent = []
+			List<Response> received = []
+			List<String> bodies = []
+			def execute = { Request req, Callback cb ->
+				sent << req
+				Response r = 1 == sent.size() ? response(req, 200, 'max-age=0') :
+					response(req, 304, 'max-age=60').newBuilder().header('ETag', '"v2"').build()
+				cb.onResponse(client.newCall(req), r)
+			} as BiConsumer<Request, Callback>
+			Callback callback = new Callback() {
+				void onFailure(Call call, IOException e) {}
+				void onResponse(Call call, Response r) { received << r; bodies << r.body().string() }
+			}
+
+		when:
+			cache.handle(client, request, callback, execute)
+			cache.handle(client, request, callback, execute)
+			cache.handle(client, request, callback, execute)
+		then:
+			sent.size() == 2
+			cache.revalidations == 1
+			cache.hits == 1
+			received[1].header('ETag') == '"v2"'
+			received[2].header('Cache-Control') == 'max-age=60'
+			bodies == ['hello', 'hello', 'hello']
+	}
+
+	def "LRU eviction by size"() {
+		given:
+			ResponseCache cache = new ResponseCache().maxBytes(8)
+			def execute = { Request req, Callback cb ->
+				cb.onResponse(client.newCall(req), response(req, 200, 'max-age=60'))
+			} as BiConsumer<Request, Callback>
+			Callback callback = new Callback() {
+				void onFailure(Call call, IOException e) {}
+				void onResponse(Call call, Response r) { r.close() }
+			}
+
+		when:
+			cache.handle(client, request, callback, execute)
+			cache.handle(client, request, callback, execute)
+			cache.handle(client, request.newBuilder().url('http://example.com/b').build(), callback, execute)
+		then:
+			cache.hits == 1
+			cache.evictions == 1
+			cache.entryCount == 1
+			cache.sizeBytes == 5
+	}
+
+	def "Unsafe requests and responses are not cached"() {
+		given:
+			ResponseCache cache = new ResponseCache()
+			List<Request> sent = []
+			String cacheControl = 'max-age=60'
+			def execute = { Request req, Callback cb ->
+				sent << req
+				cb.onResponse(client.newCall(req), response(req, 200, cacheControl))
+			} as BiConsumer<Request, Callback>
+			Callback callback = new Callback() {
+				void onFailure(Call call, IOException e) {}
+				void onResponse(Call call, Response r) { r.close() }
+			}
+			Request authorized = request.newBuilder().header('Authorization', 'Bearer x').build()
+
+		expect:
+			! cache.caches(request.newBuilder().header('Range', 'bytes=0-9').build())
+			! cache.caches(request.newBuilder().header('If-None-Match', '"v1"').build())
+
+		when:
+			cache.handle(client, authorized, callback, execute)
+			cache.handle(client, authorized, callback, execute)
+		then:
+			sent.size() == 2
+			cache.entryCount == 0
+
+		when:
+			cacheControl = 'public, max-age=60'
+			cache.handle(client, authorized, callback, execute)
+			cache.handle(client, authorized, callback, execute)
+		then:
+			sent.size() == 3
+			cache.hits == 1
+
+		when:
+			cache.clear()
+			cacheControl = 'no-transform'
+			cache.handle(client, request, callback, execute)
+		then:
+			cache.entryCount == 0
+	}
+
+	def "Vary headers are part of the key"() {
+		given:
+			ResponseCache cache = new ResponseCache()
+			List<Request> sent = []
+			def execute = { Request req, Callback cb ->
+				sent << req
+				cb.onResponse(client.newCall(req), response(req, 200, 'max-age=60').newBuilder().header('Vary', 'Accept-Language').build())
+			} as BiConsumer<Request, Callback>
+			Callback callback = new Callback() {
+				void onFailure(Call call, IOException e) {}
+				void onResponse(Call call, Response r) { r.close() }
+			}
+			Request en = request.newBuilder().header('Accept-Language', 'en').build()
+			Request fr = request.newBuilder().header('Accept-Language', 'fr').build()
+
+		when:
+			cache.handle(client, en, callback, execute)
+			cache.handle(client, fr, callback, execute)
+			cache.handle(client, en, callback, execute)
+		then:
+			sent.size() == 2
+			cache.hits == 1
+			cache.entryCount == 2
+	}
+}
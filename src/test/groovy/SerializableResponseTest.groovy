@@ -0,0 +1,79 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+
+import com.mentalresonance.dust.http.service.HttpRequestResponseMsg
+import com.mentalresonance.dust.http.service.HttpResponseData
+import com.mentalresonance.dust.http.service.HttpService
+import okhttp3.*
+import okio.Buffer
+import spock.lang.Specification
+
+/**
+ * A materialized request/response message survives Java serialization
+ */
+class SerializableResponseTest extends Specification {
+
+	def "Round trip"() {
+		when:
+			Request request = HttpService.buildPostRequest('http://example.com/p', '{"a":1}')
+			Response response = new Response.Builder()
+				.request(request)
+				.protocol(Protocol.HTTP_1_1)
+				.code(201)
+				.message('Created')
+				.header('X-Id', '42')
+				.body(ResponseBody.create('done', MediaType.get('text/plain; charset=utf-8')))
+				.build()
+			HttpRequestResponseMsg msg = new HttpRequestResponseMsg(null, request, 'tag')
+			msg.response = response
+			msg.data = HttpResponseData.of(response)
+
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream()
+			new ObjectOutputStream(bytes).withCloseable { it.writeObject(msg) }
+			HttpRequestResponseMsg copy = (HttpRequestResponseMsg) new ObjectInputStream(
+				new ByteArrayInputStream(bytes.toByteArray())).readObject()
+			Buffer sent = new Buffer()
+			copy.request.body().writeTo(sent)
+
+		then:
+			copy.response == null
+			copy.tag == 'tag'
+			copy.key() == 'example.com'
+			copy.request.method() == 'POST'
+			copy.request.header('User-Agent') != null
+			sent.readUtf8() == '{"a":1}'
+			copy.data.code == 201
+			copy.data.header('x-id') == '42'
+			copy.data.bodyString() == 'done'
+	}
+
+	def "One-shot bodies are not serializable"() {
+		when:
+			RequestBody oneShot = new RequestBody() {
+				MediaType contentType() { null }
+				void writeTo(okio.BufferedSink sink) { sink.writeUtf8('once') }
+				boolean isOneShot() { true }
+			}
+			HttpRequestResponseMsg msg = new HttpRequestResponseMsg(null,
+				new Request.Builder().url('http://example.com/p').post(oneShot).build())
+			new ObjectOutputStream(new ByteArrayOutputStream()).withCloseable { it.writeObject(msg) }
+
+		then:
+			thrown(NotSerializableException)
+	}
+}
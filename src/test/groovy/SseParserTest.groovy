@@ -0,0 +1,69 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+
+import com.mentalresonance.dust.http.msgs.LazyStreamingHttpDataMsg
+import com.mentalresonance.dust.http.service.SseParser
+import okio.Buffer
+import okio.ByteString
+import spock.lang.Specification
+
+/**
+ * The byte level parser follows the SSE field rules and interns event types
+ */
+class SseParserTest extends Specification {
+
+	def "Parse"() {
+		given:
+			List<LazyStreamingHttpDataMsg> events = []
+			long retry = -1
+			def handler = new SseParser.Handler() {
+				void onEvent(ByteString id, String type, ByteString data) {
+					events << new LazyStreamingHttpDataMsg(id, type, data)
+				}
+				void onRetryChange(long timeMs) { retry = timeMs }
+			}
+			Buffer source = new Buffer().writeUtf8(
+				': comment\n' +
+				'retry: 2500\n' +
+				'id: 1\r\n' +
+				'event: tick\n' +
+				'data: a\n' +
+				'data:b\n' +
+				'\n' +
+				'event: tick\n' +
+				'data: {"p":1}\r' +
+				'\r\n' +
+				'event: empty\n' +
+				'\n'
+			)
+			SseParser parser = new SseParser(source, handler)
+
+		when:
+			while (parser.processNextEvent()) {}
+
+		then:
+			retry == 2500
+			events.size() == 2
+			events[0].id == '1'
+			events[0].type == 'tick'
+			events[0].data == 'a\nb'
+			events[1].id == null
+			events[1].rawData.utf8() == '{"p":1}'
+			events[0].type.is(events[1].type)
+	}
+}
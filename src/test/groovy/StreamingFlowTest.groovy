@@ -0,0 +1,73 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+
+import com.mentalresonance.dust.http.msgs.StreamingHttpDataMsg
+import com.mentalresonance.dust.http.service.StreamingHttpFlow
+import spock.lang.Specification
+
+import java.util.function.Consumer
+
+import static com.mentalresonance.dust.http.service.StreamingHttpFlow.Overflow.*
+
+/**
+ * Events wait for credit in a bounded buffer and the overflow policy decides what is lost
+ */
+class StreamingFlowTest extends Specification {
+
+	static StreamingHttpDataMsg event(String type, String data) {
+		new StreamingHttpDataMsg(null, type, data)
+	}
+
+	def "Drop oldest"() {
+		given:
+			List<String> got = []
+			StreamingHttpFlow flow = new StreamingHttpFlow(2, DROP_OLDEST, 1, { got << it.data } as Consumer)
+		when:
+			['a', 'b', 'c', 'd'].each { flow.offer(event(null, it)) }
+		then:
+			got == ['a']
+			flow.depth == 2
+			flow.dropped == 1
+		when:
+			flow.request(5)
+		then:
+			got == ['a', 'c', 'd']
+			flow.credit == 3
+	}
+
+	def "Conflate by type"() {
+		given:
+			List<String> got = []
+			boolean ended = false
+			StreamingHttpFlow flow = new StreamingHttpFlow(10, CONFLATE_BY_TYPE, 0, { got << it.data } as Consumer)
+		when:
+			flow.offer(event('price', '1'))
+			flow.offer(event('volume', '10'))
+			flow.offer(event('price', '2'))
+			flow.finish { ended = true }
+		then:
+			flow.depth == 2
+			flow.dropped == 1
+			! ended
+		when:
+			flow.request(2)
+		then:
+			got == ['2', '10']
+			ended
+	}
+}
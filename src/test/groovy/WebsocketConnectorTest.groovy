@@ -0,0 +1,112 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+import com.mentalresonance.dust.http.service.WebsocketConnector
+import com.mentalresonance.dust.http.service.WebsocketHandler
+import com.mentalresonance.dust.http.service.WebsocketOptions
+import spock.lang.Specification
+
+import javax.websocket.CloseReason
+import javax.websocket.RemoteEndpoint
+import javax.websocket.SendHandler
+import javax.websocket.SendResult
+import javax.websocket.Session
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+/**
+ * Connection is made in the background and retried with backoff before giving up. Sends wait for the first open.
+ */
+class WebsocketConnectorTest extends Specification {
+
+	static class Handler implements WebsocketHandler {
+		CountDownLatch failed = new CountDownLatch(1)
+		Throwable cause = null
+		int opens = 0
+
+		void onOpen(Session userSession) { ++opens }
+		void onClose(Session userSession, CloseReason reason) {}
+		void onMessage(String message) {}
+
+		void onConnectFailed(Throwable cause) {
+			this.cause = cause
+			failed.countDown()
+		}
+	}
+
+	def "Gives up after max attempts"() {
+		given:
+			Handler handler = new Handler()
+			WebsocketConnector connector = new WebsocketConnector(
+				new URI('ws://127.0.0.1:1/'), handler, null, new WebsocketOptions().reconnect(10L, 20L, 2)
+			)
+		when:
+			long start = System.currentTimeMillis()
+			connector.connect()
+			boolean quick = System.currentTimeMillis() - start < 1000L
+		then:
+			quick
+			handler.failed.await(30, TimeUnit.SECONDS)
+			handler.cause != null
+			connector.attempts == 2
+			! connector.open
+	}
+
+	def "Sends are held until open"() {
+		given:
+			List<String> frames = []
+			RemoteEndpoint.Async remote = [
+				sendText: { String text, SendHandler handler -> frames << text; handler.onResult(new SendResult()) }
+			] as RemoteEndpoint.Async
+			Session session = [isOpen: { -> true }, getAsyncRemote: { -> remote }] as Session
+			Handler handler = new Handler()
+			WebsocketConnector connector = new WebsocketConnector(
+				new URI('ws://127.0.0.1:1/'), handler, null, new WebsocketOptions()
+			)
+		when:
+			connector.writer.send('hello', null)
+			connector.subscribe('sub')
+		then:
+			frames == []
+			connector.writer.queued == 1
+		when:
+			connector.endpoint.onOpen(session)
+		then:
+			frames == ['hello', 'sub']
+			handler.opens == 1
+	}
+
+	def "Held sends fail when closed before opening"() {
+		given:
+			boolean sessionClosed = false
+			Session session = [isOpen: { -> true }, close: { -> sessionClosed = true }] as Session
+			Handler handler = new Handler()
+			WebsocketConnector connector = new WebsocketConnector(
+				new URI('ws://127.0.0.1:1/'), handler, null, new WebsocketOptions()
+			)
+		when:
+			connector.writer.send('hello', null)
+			connector.close()
+		then:
+			connector.writer.failed == 1
+			connector.writer.queued == 0
+		when:
+			connector.onOpen(session)
+		then:
+			sessionClosed
+			handler.opens == 0
+	}
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+import com.mentalresonance.dust.http.service.PerMessageDeflateExtension
+import com.mentalresonance.dust.http.service.WebsocketHeartbeat
+import org.glassfish.tyrus.core.TyrusExtension
+import org.glassfish.tyrus.core.extension.ExtendedExtension
+import org.glassfish.tyrus.core.frame.Frame
+import spock.lang.Specification
+
+import javax.websocket.CloseReason
+import javax.websocket.RemoteEndpoint
+import javax.websocket.Session
+import java.nio.ByteBuffer
+import java.nio.charset.StandardCharsets
+import java.util.zip.Deflater
+
+/**
+ * permessage-deflate frames round trip, small messages go uncompressed and a silent peer fails the heartbeat
+ */
+class WebsocketDeflateTest extends Specification {
+
+	static ExtendedExtension.ExtensionContext context() {
+		Map<String, Object> properties = [:]
+		[getProperties: { -> properties }] as ExtendedExtension.ExtensionContext
+	}
+
+	static Frame frame(int opcode, boolean fin, byte[] data) {
+		Frame.builder().opcode((byte) opcode).fin(fin).payloadData(data).payloadLength(data.length).build()
+	}
+
+	def "Round trip with and without context takeover"() {
+		given:
+			PerMessageDeflateExtension ext = new PerMessageDeflateExtension(Deflater.BEST_SPEED, 64, false, noTakeover)
+			def client = context(), server = context()
+			ext.onHandshakeResponse(client, noTakeover ? [new TyrusExtension.TyrusParameter('server_no_context_takeover', null)] : [])
+			ext.onHandshakeResponse(server, [])
+			byte[] json = ('{"symbol":"BTCUSDT","price":12345.67,"volume":0.5}' * 40).getBytes(StandardCharsets.UTF_8)
+		when:
+			List<Frame> sent = (1..3).collect { ext.processOutgoing(client, frame(1, true, json)) }
+			List<Frame> got = sent.collect { ext.processIncoming(server, it) }
+		then:
+			sent.every { it.rsv1 && it.payloadLength < json.length / 5 }
+			got.every { ! it.rsv1 && it.payloadData == json }
+		where:
+			noTakeover << [false, true]
+	}
+
+	def "Fragments and small messages"() {
+		given:
+			PerMessageDeflateExtension ext = new PerMessageDeflateExtension(Deflater.DEFAULT_COMPRESSION, 64, false, false)
+			def client = context(), server = context()
+			ext.onHandshakeResponse(client, [])
+			ext.onHandshakeResponse(server, [])
+			byte[] part = ('abcdefgh' * 100).bytes
+		when:
+			Frame small = ext.processOutgoing(client, frame(1, true, 'hi'.bytes))
+			Frame first = ext.processOutgoing(client, frame(2, false, part))
+			Frame last = ext.processOutgoing(client, frame(0, true, part))
+			String inflated = new String(ext.processIncoming(server, first).payloadData) + new String(ext.processIncoming(server, last).payloadData)
+		then:
+			! small.rsv1
+			new String(ext.processIncoming(server, small).payloadData) == 'hi'
+			first.rsv1
+			! last.rsv1
+			inflated == 'abcdefgh' * 200
+	}
+
+	def "Heartbeat closes a silent connection"() {
+		given:
+			int pings = 0
+			CloseReason closed = null
+			RemoteEndpoint.Async remote = [sendPing: { ByteBuffer b -> pings++ }] as RemoteEndpoint.Async
+			Session session = [
+				isOpen: { -> closed == null },
+				getAsyncRemote: { -> remote },
+				getRequestURI: { -> new URI('ws://localhost/') },
+				close: { CloseReason r -> closed = r }
+			] as Session
+			WebsocketHeartbeat heartbeat = new WebsocketHeartbeat(20L, 50L)
+		when:
+			heartbeat.start(session)
+			Thread.sleep(500L)
+		then:
+			pings == 1
+			closed.closeCode == CloseReason.CloseCodes.GOING_AWAY
+			heartbeat.timeouts == 1
+			heartbeat.lastRttMs == -1.0
+	}
+}
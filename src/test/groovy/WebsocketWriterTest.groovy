@@ -0,0 +1,85 @@
+/*
+ * Copyright 2024-2025 Alan Littleford
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+import com.mentalresonance.dust.http.service.WebsocketOptions
+import com.mentalresonance.dust.http.service.WebsocketWriter
+import spock.lang.Specification
+
+import javax.websocket.RemoteEndpoint
+import javax.websocket.SendHandler
+import javax.websocket.SendResult
+import javax.websocket.Session
+import java.util.function.Function
+import java.util.function.Supplier
+
+/**
+ * Sends beyond the in-flight limit wait their turn, queued text may be coalesced and a full queue fails at once
+ */
+class WebsocketWriterTest extends Specification {
+
+	List<String> frames = []
+	List<SendHandler> handlers = []
+
+	WebsocketWriter writer(WebsocketOptions options) {
+		RemoteEndpoint.Async remote = [
+			sendText: { String text, SendHandler handler -> frames << text; handlers << handler }
+		] as RemoteEndpoint.Async
+		Session session = [isOpen: { -> true }, getAsyncRemote: { -> remote }] as Session
+		new WebsocketWriter({ session } as Supplier, null, options)
+	}
+
+	void complete() {
+		SendHandler handler = handlers.remove(0)
+		handler.onResult(new SendResult())
+	}
+
+	def "In flight limit"() {
+		given:
+			WebsocketWriter w = writer(new WebsocketOptions().sends(2, 2))
+		when:
+			['a', 'b', 'c', 'd', 'e'].each { w.send(it, null) }
+		then:
+			frames == ['a', 'b']
+			w.inFlight == 2
+			w.queued == 2
+			w.failed == 1
+		when:
+			complete()
+			complete()
+		then:
+			frames == ['a', 'b', 'c', 'd']
+			w.sent == 2
+	}
+
+	def "Coalesce queued text"() {
+		given:
+			WebsocketWriter w = writer(
+				new WebsocketOptions().sends(1, 100).coalesce(3, { '[' + it.join(',') + ']' } as Function)
+			)
+		when:
+			['1', '2', '3', '4', '5'].each { w.send(it, null) }
+			complete()
+		then:
+			frames == ['1', '[2,3,4]']
+		when:
+			complete()
+			complete()
+		then:
+			frames == ['1', '[2,3,4]', '5']
+			w.sent == 5
+			w.inFlight == 0
+	}
+}